@@ -0,0 +1,142 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import java.util.ArrayDeque;
+
+/**
+ * A cache of the paths decoded from the PathSources of route patterns, holding at most a fixed number of points in
+ * all, counting both the decoded paths and the simplified paths made from them.
+ *
+ * The entry holding a pattern's decoded path is also kept in the pattern (RoutePattern.decoded), so that reading a
+ * cached path takes no lock; the cache sets that field when it adds an entry and clears it when it drops one.
+ * Paths are dropped roughly in order of last use: entries are kept in the order in which they were added, and the
+ * eldest is dropped unless it has been read since it was last passed over, in which case it goes to the back
+ * instead.  A dropped path is simply decoded again the next time it is needed.  Paths are decoded without holding
+ * the lock, so a slow decode on one thread does not hold up readers of other paths.
+ */
+class PathCache {
+    private final int maxPoints;
+    // cached entries, eldest first
+    private final ArrayDeque<Entry> entries;
+    private int points = 0;
+
+    /**
+     * The decoded path of one pattern, with the paths simplified from it
+     */
+    static final class Entry {
+        final RoutePattern owner;
+        final PathSource source;
+        final int[] path;
+        // path simplified for each detail level; null until first needed; guarded by the cache
+        final int[][] simplified;
+        // points in path and simplified; guarded by the cache
+        int points;
+        // true while the entry is in the cache; guarded by the cache
+        boolean cached;
+        // set when the path is read, cleared when the entry is passed over for dropping
+        volatile boolean used;
+
+        Entry(RoutePattern owner, PathSource source, int[] path, int levels) {
+            this.owner = owner;
+            this.source = source;
+            this.path = path;
+            this.simplified = new int[levels][];
+            this.points = path.length / 2;
+        }
+    }
+
+    /**
+     * Construct an empty cache
+     *
+     * @param maxPoints  the most points to keep, in all paths together
+     */
+    PathCache(int maxPoints) {
+        this.maxPoints = maxPoints;
+        entries = new ArrayDeque<>();
+    }
+
+    /**
+     * Decode the path of owner from source and cache it, unless another thread has cached it first
+     *
+     * @param owner   the pattern whose path is decoded
+     * @param source  the source of the path, which is owner's source
+     * @param levels  the number of detail levels at which the path may be simplified
+     * @return        the entry holding the path
+     */
+    Entry load(RoutePattern owner, PathSource source, int levels) {
+        int[] path = source.decodePath();
+        synchronized (this) {
+            Entry current = owner.decoded;
+            if (current != null && current.source == source) {
+                return current;
+            }
+            Entry entry = new Entry(owner, source, path, levels);
+            if (!owner.hasSource(source)) {
+                // the path has been replaced meanwhile, so this one is not kept
+                return entry;
+            }
+            entry.cached = true;
+            entry.used = true;
+            entries.addLast(entry);
+            points += entry.points;
+            owner.decoded = entry;
+            trim(entry);
+            return entry;
+        }
+    }
+
+    /**
+     * Return the path of entry simplified at the given detail level
+     *
+     * @return  the simplified path; null if it has not been made
+     */
+    synchronized int[] getSimplified(Entry entry, int level) {
+        return entry.simplified[level];
+    }
+
+    /**
+     * Keep the path of entry simplified at the given detail level, counting its points against the limit
+     *
+     * @return  the simplified path kept, which is points unless another thread kept one first
+     */
+    synchronized int[] putSimplified(Entry entry, int level, int[] simplified) {
+        int[] current = entry.simplified[level];
+        if (current != null) {
+            return current;
+        }
+        entry.simplified[level] = simplified;
+        entry.points += simplified.length / 2;
+        if (entry.cached) {
+            points += simplified.length / 2;
+            trim(entry);
+        }
+        return simplified;
+    }
+
+    /**
+     * Drop entries until the points cached are within the limit, keeping the entry just added or grown even if
+     * it alone is over the limit.  Each entry read since it was last passed over is passed over once more.
+     */
+    private void trim(Entry kept) {
+        int passes = 2 * entries.size();
+        while (points > maxPoints && entries.size() > 1 && passes-- > 0) {
+            Entry eldest = entries.pollFirst();
+            if (eldest == kept || eldest.used) {
+                eldest.used = false;
+                entries.addLast(eldest);
+                continue;
+            }
+            eldest.cached = false;
+            points -= eldest.points;
+            if (eldest.owner.decoded == eldest) {
+                eldest.owner.decoded = null;
+            }
+        }
+    }
+
+    /**
+     * Return the number of points in the paths now cached, simplified paths included
+     */
+    synchronized int size() {
+        return points;
+    }
+}
@@ -0,0 +1,67 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.util.List;
+
+/**
+ * A run of consecutive points on the path of a route pattern, such as the part of the path that is visible on the
+ * map.  A run from point i to point j covers the segments between consecutive points i, i + 1, ..., j.
+ */
+public class PathRun {
+    private final RoutePattern pattern;
+    private final int[] path;
+    private final int first;
+    private final int last;
+
+    /**
+     * Construct a run of points on the path of a pattern
+     * @param pattern   the route pattern
+     * @param path      the packed path of the pattern at the time the run was found
+     * @param first     the index of the first point of the run
+     * @param last      the index of the last point of the run
+     */
+    PathRun(RoutePattern pattern, int[] path, int first, int last) {
+        this.pattern=pattern;
+        this.path=path;
+        this.first=first;
+        this.last=last;
+    }
+
+    /**
+     * Get the route pattern whose path the run is part of
+     * @return      the route pattern
+     */
+    public RoutePattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Get the index on the path of the first point of the run
+     * @return      the index of the first point
+     */
+    public int getFirstPoint() {
+        return first;
+    }
+
+    /**
+     * Get the index on the path of the last point of the run
+     * @return      the index of the last point
+     */
+    public int getLastPoint() {
+        return last;
+    }
+
+    /**
+     * Get the points of the run, in order along the path.  LatLon objects are created as the list is read.
+     * @return      the points from the first to the last point of the run
+     */
+    public List<LatLon> getPath() {
+        return new RoutePattern.PathView(path).subList(first, last+1);
+    }
+
+    @Override
+    public String toString() {
+        return pattern.getName()+" ["+first+".."+last+"]";
+    }
+}
@@ -0,0 +1,24 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * The undecoded path of a route pattern, such as its part of a memory-mapped snapshot file, from which the path is
+ * decoded only when it is first needed.  See RoutePattern.setPath(PathSource).
+ */
+public interface PathSource {
+
+    /**
+     * Return the number of points on the path, without decoding it
+     *
+     * @return  the number of points
+     */
+    int getNumPoints();
+
+    /**
+     * Decode the path into a new array.  This may be called more than once, from any thread, and must give the
+     * same coordinates every time.
+     *
+     * @return  latitude and longitude of each of getNumPoints() points in millionths of a degree, one pair after
+     *          another
+     */
+    int[] decodePath();
+}
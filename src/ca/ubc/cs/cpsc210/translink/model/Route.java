@@ -2,7 +2,7 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import java.util.*;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a bus route with a route number, name, list of stops, and list of RoutePatterns.
@@ -10,13 +10,23 @@ import java.util.LinkedList;
  * Invariants:
  * - no duplicates in list of stops
  * - iterator iterates over stops in the order in which they were added to the route
+ * <p/>
+ * Each route guards its own stops with its own lock, so stops may be linked to different routes on different
+ * threads without contending for one lock.  The lock is never held while the stop is linked back to the route,
+ * so a route and a stop never wait for each other.  The iterator is not guarded; to read the stops while they may
+ * be changing on another thread, use getStops, which returns a copy.  Patterns are copied on write, so they may
+ * be read while patterns are being added.
  */
 
 public class Route implements Iterable<Stop> {
     private String number;
     private String name;
-    private List<Stop> stops;
-    private List<RoutePattern> patterns=new LinkedList<RoutePattern>();
+    // Stops in the order in which they were added; also answers membership queries in constant time.
+    // Guarded by this route's lock
+    private Set<Stop> stops;
+    // Cached list of stops returned by getStops, rebuilt after the stops change
+    private volatile List<Stop> stopList;
+    private final CopyOnWriteArrayList<RoutePattern> patterns=new CopyOnWriteArrayList<RoutePattern>();
 
     /**
      * Constructs a route with given number.
@@ -26,7 +36,7 @@ public class Route implements Iterable<Stop> {
      */
     public Route(String number) {
         this.number=number;
-        this.stops=new LinkedList<Stop>();
+        this.stops=new LinkedHashSet<Stop>();
     }
 
     /**
@@ -52,32 +62,73 @@ public class Route implements Iterable<Stop> {
      * @param pattern
      */
     public void addPattern(RoutePattern pattern) {
-        if(!patterns.contains(pattern)){
-            patterns.add(pattern);
+        if(patterns.addIfAbsent(pattern)){
+            StopManager.getInstance().transitChanged();
+            RouteManager.getInstance().pathsChanged();
         }
     }
 
     /**
      * Add stop to route.  Stops must not be duplicated in a route.
+     * Every link between a stop and a route is made here, whether through this method or Stop.addRoute,
+     * so this is where the change is reported to the StopManager.
      *
      * @param stop the stop to add to this route
      */
     public void addStop(Stop stop) {
-        if (! stops.contains(stop)){
-            stops.add(stop);
+        boolean added;
+        synchronized (this) {
+            added=stops.add(stop);
+            if (added) {
+                stopList=null;
+            }
+        }
+        if (added){
             stop.addRoute(this);
+            StopManager.getInstance().transitChanged();
         }
     }
 
     /**
-     * Remove stop from route
+     * Add all given stops to route, in order, skipping stops that are already on the route.
+     * Each stop added is also linked back to this route.
+     *
+     * @param toLink the stops to add to this route
+     */
+    public void linkStops(Collection<Stop> toLink) {
+        List<Stop> linked=new ArrayList<Stop>(toLink.size());
+        synchronized (this) {
+            for (Stop stop : toLink) {
+                if (stops.add(stop)) {
+                    linked.add(stop);
+                }
+            }
+            stopList=null;
+        }
+        for (Stop stop : linked) {
+            stop.addRoute(this);
+        }
+        if (!linked.isEmpty()) {
+            StopManager.getInstance().transitChanged();
+        }
+    }
+
+    /**
+     * Remove stop from route.  As with addStop, every link removed goes through here.
      *
      * @param stop the stop to remove from this route
      */
     public void removeStop(Stop stop) {
-        if(stops.contains(stop)){
-            stops.remove(stop);
+        boolean removed;
+        synchronized (this) {
+            removed=stops.remove(stop);
+            if (removed) {
+                stopList=null;
+            }
+        }
+        if(removed){
             stop.removeRoute(this);
+            StopManager.getInstance().transitChanged();
         }
     }
 
@@ -87,7 +138,14 @@ public class Route implements Iterable<Stop> {
      * @return      A list of all the stops
      */
     public List<Stop> getStops() {
-        return Collections.unmodifiableList(stops);
+        List<Stop> list=stopList;
+        if(list==null){
+            synchronized (this) {
+                list=Collections.unmodifiableList(new ArrayList<Stop>(stops));
+                stopList=list;
+            }
+        }
+        return list;
     }
 
     /**
@@ -96,7 +154,7 @@ public class Route implements Iterable<Stop> {
      * @param stop the stop
      * @return true if route has a stop at given stop
      */
-    public boolean hasStop(Stop stop) {
+    public synchronized boolean hasStop(Stop stop) {
         return  this.stops.contains(stop);
     }
 
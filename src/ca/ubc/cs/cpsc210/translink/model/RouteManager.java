@@ -1,27 +1,44 @@
 package ca.ubc.cs.cpsc210.translink.model;
 
-import java.util.HashMap;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages all routes.
  *
  * Singleton pattern applied to ensure only a single instance of this class that
  * is globally accessible throughout application.
+ *
+ * The route manager may be used from any thread.  Routes are held in a concurrent map,
+ * so lookups and iteration do not block while routes are being added.
+ *
+ * The route manager also keeps the index of the segments of the paths of all route patterns, used to find the
+ * parts of routes visible on the map.  It is built by the first query after a pattern is added or a path is set,
+ * and kept until the next such change; changes to stops do not affect it.
  */
 
 public class RouteManager implements Iterable<Route> {
-    private static RouteManager instance;
-    // Use this field to hold all of the routes.
-    // Do not change this field or its type, as the iterator method depends on it
-    private Map<String, Route> routeMap;
+    // Use this field to hold all of the routes, keyed by route number
+    private final ConcurrentMap<String, Route> routeMap;
+    // Incremented whenever a route pattern is added or removed or its path is set
+    private final AtomicLong pathVersion;
+    // Index of the segments of the paths of all patterns, as of the version it records; null until first needed
+    private volatile SegmentIndex segmentIndex;
 
     /**
      * Constructs Route manager with empty set of routes
      */
     private RouteManager() {
-        routeMap=new HashMap<>();
+        routeMap=new ConcurrentHashMap<>();
+        pathVersion=new AtomicLong();
+        segmentIndex=null;
     }
 
     /**
@@ -31,10 +48,14 @@ public class RouteManager implements Iterable<Route> {
      */
     public static RouteManager getInstance() {
         // Do not modify the implementation of this method!
-        if(instance == null) {
-            instance = new RouteManager();
-        }
-        return instance;
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Holds the instance, which is created and safely published the first time getInstance is called
+     */
+    private static class InstanceHolder {
+        private static final RouteManager INSTANCE = new RouteManager();
     }
 
     /**
@@ -46,15 +67,7 @@ public class RouteManager implements Iterable<Route> {
      * @return  route with given number
      */
     public Route getRouteWithNumber(String number) {
-        for(Route current:routeMap.values()){
-            if(current.getNumber().equals(number)){
-                return current;
-            }
-        }
-        Route route=new Route(number);
-        route.setName("");
-        routeMap.put(number,route);
-        return route;
+        return getRouteWithNumber(number, "");
     }
 
     /**
@@ -65,14 +78,18 @@ public class RouteManager implements Iterable<Route> {
      * @return  route with given number and name
      */
     public Route getRouteWithNumber(String number, String name) {
-        for(Route current: routeMap.values()){
-            if(current.getNumber().equals(number)){
-                return current;
-            }
+        Route route=routeMap.get(number);
+        if(route != null){
+            return route;
         }
-        Route route=new Route(number);
+        // route numbers recur in every stop and pattern that uses the route, so keep one shared copy
+        route=new Route(number.intern());
         route.setName(name);
-        routeMap.put(number,route);
+        Route existing=routeMap.putIfAbsent(route.getNumber(),route);
+        if(existing != null){
+            return existing;
+        }
+        StopManager.getInstance().transitChanged();
         return route;
     }
 
@@ -96,5 +113,60 @@ public class RouteManager implements Iterable<Route> {
      */
     public void clearRoutes() {
         routeMap.clear();
+        StopManager.getInstance().transitChanged();
+        pathsChanged();
+    }
+
+    /**
+     * Record that a route pattern has been added or removed or its path set, so that the next query of paths
+     * rebuilds the segment index
+     */
+    void pathsChanged() {
+        pathVersion.incrementAndGet();
+    }
+
+    /**
+     * Find the parts of the paths of all route patterns that are inside or cross the rectangle formed by northWest
+     * and southEast.  Consecutive segments of a path that touch the rectangle are returned as a single run, so
+     * that each run can be drawn as one line.
+     *
+     * @param northWest  the coordinate of the north west corner of the rectangle
+     * @param southEast  the coordinate of the south east corner of the rectangle
+     * @return           the runs, ordered by pattern and then by position along the path
+     */
+    public List<PathRun> pathRunsInRectangle(LatLon northWest, LatLon southEast) {
+        return getSegmentIndex().runsInRectangle(northWest, southEast);
+    }
+
+    /**
+     * Find the parts of the paths of the given route patterns that are inside or cross the rectangle formed by
+     * northWest and southEast, as pathRunsInRectangle(northWest, southEast) does, without looking at the paths
+     * of any other pattern
+     *
+     * @param northWest  the coordinate of the north west corner of the rectangle
+     * @param southEast  the coordinate of the south east corner of the rectangle
+     * @param patterns   the route patterns whose paths are searched
+     * @return           the runs, ordered by pattern and then by position along the path
+     */
+    public List<PathRun> pathRunsInRectangle(LatLon northWest, LatLon southEast, Collection<RoutePattern> patterns) {
+        return getSegmentIndex().runsInRectangle(northWest, southEast, patterns);
+    }
+
+    /**
+     * Return the segment index of the current patterns and paths, building it if any has changed since it was built
+     */
+    private SegmentIndex getSegmentIndex() {
+        SegmentIndex index=segmentIndex;
+        long version=pathVersion.get();
+        if(index==null || index.getVersion()!=version){
+            // the version is read before the patterns, so an index that misses a later change is rebuilt next time
+            List<RoutePattern> patterns=new ArrayList<>();
+            for(Route route : routeMap.values()){
+                patterns.addAll(route.getPatterns());
+            }
+            index=new SegmentIndex(patterns, version);
+            segmentIndex=index;
+        }
+        return index;
     }
 }
\ No newline at end of file
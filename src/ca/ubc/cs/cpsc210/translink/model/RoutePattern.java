@@ -1,22 +1,53 @@
 package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.PathSimplifier;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * A description of one pattern of a route
  * Each pattern has a name, destination, direction, list of points (of class LatLon), and Route
+ *
+ * The points of the path are stored packed in a single int array as pairs of latitude and longitude in
+ * millionths of a degree (about 0.1m), which is the precision of the route map data.  LatLon objects are only
+ * created when the path is read through getPath.
+ *
+ * For drawing on the map, getPath(zoomLevel) returns the path simplified to the level of detail that can be seen
+ * at the given zoom level.  The zoom bands are those used for the width of route lines on the map; the tolerance
+ * of each band is a little under one pixel at the most detailed zoom level in the band (about 6m per pixel at
+ * zoom 14 and 100m at zoom 10 in Vancouver).  Simplified paths are computed when first needed and kept.
+ *
+ * A path may instead be set from a PathSource, in which case it is decoded the first time it is read and kept,
+ * with the paths simplified from it, in a cache shared by all patterns that holds at most MAX_CACHED_POINTS points,
+ * so that only the paths in use are held in memory.  The number of points is known without decoding the path.
+ * Reading a path that is cached takes no lock.
  */
 
 public class RoutePattern {
+    private static final double MICRODEGREES = 1e6;
+    private static final int[] NO_POINTS = new int[0];
+    // greatest distance in metres of a removed point from the path drawn at zoom levels above 14, 11 to 14, and
+    // 10 or less
+    private static final double[] DETAIL_TOLERANCE = { 0.0, 5.0, 80.0 };
+    // most points held in decoded paths of all patterns together (about 500kB)
+    static final int MAX_CACHED_POINTS = 65536;
+    private static final PathCache CACHE = new PathCache(MAX_CACHED_POINTS);
+
     private String name;
     private String destination;
     private String direction;
     private Route route;
-    private List<LatLon> path;
+    // latitude and longitude of each point on the path in millionths of a degree, one pair after another;
+    // null when the path is decoded from source
+    private volatile int[] path;
+    private volatile PathSource source;
+    // path simplified for each zoom band; null until first needed; not used when the path is decoded from source
+    private volatile int[][] simplified;
+    // the path decoded from source while it is in CACHE, which sets and clears this field; null otherwise
+    volatile PathCache.Entry decoded;
 
     /**
      * Construct a new RoutePattern with the given information
@@ -30,7 +61,8 @@ public class RoutePattern {
         this.destination=destination;
         this.direction=direction;
         this.route=route;
-        this.path=new ArrayList<>();
+        this.path=NO_POINTS;
+        this.simplified=new int[DETAIL_TOLERANCE.length][];
         route.addPattern(this);
     }
 
@@ -42,6 +74,14 @@ public class RoutePattern {
         return name;
     }
 
+    /**
+     * Get the route of which this is a pattern
+     * @return      the route
+     */
+    public Route getRoute() {
+        return route;
+    }
+
     /**
      * Get the pattern destination
      * @return      the destination
@@ -80,20 +120,219 @@ public class RoutePattern {
     }
 
     /**
-     * Set the pattern path: list of coordinates
+     * Set the pattern path: list of coordinates.  Coordinates are rounded to the nearest millionth of a degree.
      * @param path      the path
      */
     public void setPath(List<LatLon> path) {
-        this.path=path;
+        int[] packed=new int[path.size()*2];
+        int i=0;
+        for(LatLon point:path){
+            packed[i++]=toMicrodegrees(point.getLatitude());
+            packed[i++]=toMicrodegrees(point.getLongitude());
+        }
+        setPath(packed);
+    }
+
+    /**
+     * Set the pattern path from packed coordinates.  The array is used as it is, not copied, and must not be
+     * changed afterwards.
+     * @param latLons   latitude and longitude of each point in millionths of a degree, one pair after another
+     */
+    public void setPath(int[] latLons) {
+        this.simplified=new int[DETAIL_TOLERANCE.length][];
+        this.path=latLons;
+        this.source=null;
+        this.decoded=null;
+        RouteManager.getInstance().pathsChanged();
+    }
+
+    /**
+     * Set the pattern path to be decoded from source when it is first read
+     * @param source    the source of the path
+     */
+    public void setPath(PathSource source) {
+        this.simplified=null;
+        this.source=source;
+        this.path=null;
+        this.decoded=null;
+        RouteManager.getInstance().pathsChanged();
+    }
+
+    /**
+     * Return an object that stands for the path as it is now: the same object as long as the path is not set
+     * again, and a different one after it is.  The path is not decoded.
+     *
+     * @return      the packed coordinates of the path if it is set from them, otherwise its source
+     */
+    Object getPathIdentity() {
+        int[] path=this.path;
+        return path!=null ? path : source;
+    }
+
+    /**
+     * Return true if the path of this pattern is decoded from the given source
+     */
+    boolean hasSource(PathSource source) {
+        return this.path==null && this.source==source;
     }
 
     /**
-     * Return the list of coordinates making up this pattern
+     * Return the packed coordinates of the path, which must not be changed
+     *
+     * @return      latitude and longitude of each point in millionths of a degree, one pair after another
+     */
+    int[] getPackedPath() {
+        int[] path=this.path;
+        return path!=null ? path : getDecoded().path;
+    }
+
+    /**
+     * Return the cache entry holding the path decoded from source, decoding it if it is not cached
+     */
+    private PathCache.Entry getDecoded() {
+        PathSource source=this.source;
+        PathCache.Entry entry=decoded;
+        if(entry==null || entry.source!=source){
+            return CACHE.load(this, source, DETAIL_TOLERANCE.length);
+        }
+        if(!entry.used){
+            entry.used=true;
+        }
+        return entry;
+    }
+
+    /**
+     * Return the packed coordinates of the path as getPackedPath does, but without adding a path decoded from its
+     * source to the cache; for reading the paths of many patterns once
+     *
+     * @return      latitude and longitude of each point in millionths of a degree, one pair after another
+     */
+    int[] peekPackedPath() {
+        int[] path=this.path;
+        if(path!=null){
+            return path;
+        }
+        PathSource source=this.source;
+        PathCache.Entry entry=decoded;
+        return entry!=null && entry.source==source ? entry.path : source.decodePath();
+    }
+
+    /**
+     * Return the list of coordinates making up this pattern.  The list is an unmodifiable view of the path that
+     * creates each LatLon as it is read; use getNumPoints, getLatitude and getLongitude to avoid creating them.
      *
      * @return      the list of coordinates
      */
     public List<LatLon> getPath() {
-        return Collections.unmodifiableList(path);
+        return new PathView(getPackedPath());
+    }
+
+    /**
+     * Return the list of coordinates making up this pattern, simplified for drawing at the given zoom level.
+     * The first and last points of the path are always included.
+     *
+     * @param zoomLevel     the zoom level of the map
+     * @return              the simplified list of coordinates
+     */
+    public List<LatLon> getPath(int zoomLevel) {
+        int level=detailLevel(zoomLevel);
+        if(DETAIL_TOLERANCE[level]==0.0){
+            return getPath();
+        }
+        int[][] simplified=this.simplified;
+        int[] path=this.path;
+        if(path!=null && simplified!=null){
+            int[] points=simplified[level];
+            if(points==null){
+                points=PathSimplifier.simplify(path, DETAIL_TOLERANCE[level]);
+                simplified[level]=points;
+            }
+            return new PathView(points);
+        }
+        // simplified paths of a decoded path are kept with it in the cache, and count against its limit
+        PathCache.Entry entry=getDecoded();
+        int[] points=CACHE.getSimplified(entry, level);
+        if(points==null){
+            points=CACHE.putSimplified(entry, level, PathSimplifier.simplify(entry.path, DETAIL_TOLERANCE[level]));
+        }
+        return new PathView(points);
+    }
+
+    /**
+     * Return the level of detail at which paths are drawn at the given zoom level, 0 being the most detailed
+     */
+    private static int detailLevel(int zoomLevel) {
+        if(zoomLevel > 14){
+            return 0;
+        }else if(zoomLevel > 10){
+            return 1;
+        }else{
+            return 2;
+        }
+    }
+
+    /**
+     * Return the number of points on the path of this pattern
+     *
+     * @return      the number of points
+     */
+    public int getNumPoints() {
+        int[] path=this.path;
+        return path!=null ? path.length/2 : source.getNumPoints();
+    }
+
+    /**
+     * Return the latitude of a point on the path
+     *
+     * @param i     the index of the point, from 0 to getNumPoints() - 1
+     * @return      the latitude in degrees
+     */
+    public double getLatitude(int i) {
+        return getPackedPath()[2*i]/MICRODEGREES;
+    }
+
+    /**
+     * Return the longitude of a point on the path
+     *
+     * @param i     the index of the point, from 0 to getNumPoints() - 1
+     * @return      the longitude in degrees
+     */
+    public double getLongitude(int i) {
+        return getPackedPath()[2*i+1]/MICRODEGREES;
+    }
+
+    /**
+     * Convert degrees to the nearest whole number of millionths of a degree
+     *
+     * @param degrees   the angle in degrees
+     * @return          the angle in millionths of a degree
+     */
+    public static int toMicrodegrees(double degrees) {
+        return (int)Math.round(degrees*MICRODEGREES);
+    }
+
+    /**
+     * A read-only list of LatLon over packed path coordinates
+     */
+    static class PathView extends AbstractList<LatLon> implements RandomAccess {
+        private final int[] path;
+
+        PathView(int[] path) {
+            this.path=path;
+        }
+
+        @Override
+        public LatLon get(int i) {
+            if(i<0 || i>=size()){
+                throw new IndexOutOfBoundsException("Index: "+i+", Size: "+size());
+            }
+            return new LatLon(path[2*i]/MICRODEGREES, path[2*i+1]/MICRODEGREES);
+        }
+
+        @Override
+        public int size() {
+            return path.length/2;
+        }
     }
 
     /**
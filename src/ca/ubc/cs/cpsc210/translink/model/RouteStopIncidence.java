@@ -0,0 +1,145 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import java.util.Arrays;
+
+/**
+ * Which stops are on which routes, held in compressed sparse row form.
+ *
+ * Stops and routes are identified by their indexes in the snapshot from which the incidence is built.  The stops
+ * on route r are routeStops[routeStopOffsets[r]] up to (but not including) routeStops[routeStopOffsets[r + 1]],
+ * in the order in which they were added to the route; the routes at stop s are found the same way in stopRoutes,
+ * in increasing order of route index.  Both directions are answered from int arrays without allocating.
+ *
+ * An incidence is built once and never changed, so it may be read on any thread.
+ */
+class RouteStopIncidence {
+    private final int[] routeStopOffsets;
+    private final int[] routeStops;
+    private final int[] stopRouteOffsets;
+    private final int[] stopRoutes;
+
+    /**
+     * Build the incidence of given routes and the stops of given snapshot.  Stops on a route that are not in the
+     * snapshot are left out.
+     *
+     * @param snapshot  the snapshot, whose stops must already be indexed
+     * @param routes    the routes
+     */
+    RouteStopIncidence(TransitSnapshot snapshot, Route[] routes) {
+        int numStops = snapshot.getNumStops();
+        routeStopOffsets = new int[routes.length + 1];
+        int[] links = new int[Math.max(numStops * 2, 16)];
+        int numLinks = 0;
+        for (int r = 0; r < routes.length; r++) {
+            routeStopOffsets[r] = numLinks;
+            for (Stop stop : routes[r].getStops()) {
+                int s = snapshot.getStopIndex(stop);
+                if (s < 0) {
+                    continue;
+                }
+                if (numLinks == links.length) {
+                    links = Arrays.copyOf(links, numLinks * 2);
+                }
+                links[numLinks++] = s;
+            }
+        }
+        routeStopOffsets[routes.length] = numLinks;
+        routeStops = Arrays.copyOf(links, numLinks);
+
+        // transpose: count the routes at each stop, then fill each stop's row in order of route index
+        stopRouteOffsets = new int[numStops + 1];
+        for (int i = 0; i < numLinks; i++) {
+            stopRouteOffsets[routeStops[i] + 1]++;
+        }
+        for (int s = 0; s < numStops; s++) {
+            stopRouteOffsets[s + 1] += stopRouteOffsets[s];
+        }
+        stopRoutes = new int[numLinks];
+        int[] next = Arrays.copyOf(stopRouteOffsets, numStops);
+        for (int r = 0; r < routes.length; r++) {
+            for (int i = routeStopOffsets[r]; i < routeStopOffsets[r + 1]; i++) {
+                stopRoutes[next[routeStops[i]]++] = r;
+            }
+        }
+    }
+
+    /**
+     * Build the incidence of the same routes and stops after the stop at index from has moved to index to, and the
+     * stops in between have shifted by one to make room (see TransitSnapshot.withStopMoved)
+     *
+     * @param incidence  the incidence before the move
+     * @param from       the index of the stop before the move
+     * @param to         the index of the stop after the move
+     */
+    RouteStopIncidence(RouteStopIncidence incidence, int from, int to) {
+        routeStopOffsets = incidence.routeStopOffsets;
+        routeStops = new int[incidence.routeStops.length];
+        for (int i = 0; i < routeStops.length; i++) {
+            routeStops[i] = TransitSnapshot.movedIndex(incidence.routeStops[i], from, to);
+        }
+        // each stop's row of routes is unchanged, but the rows are in the new order of stops
+        int numStops = incidence.stopRouteOffsets.length - 1;
+        stopRouteOffsets = new int[numStops + 1];
+        stopRoutes = new int[incidence.stopRoutes.length];
+        for (int s = 0; s < numStops; s++) {
+            int old = TransitSnapshot.movedIndex(s, to, from);
+            int start = incidence.stopRouteOffsets[old];
+            int count = incidence.stopRouteOffsets[old + 1] - start;
+            System.arraycopy(incidence.stopRoutes, start, stopRoutes, stopRouteOffsets[s], count);
+            stopRouteOffsets[s + 1] = stopRouteOffsets[s] + count;
+        }
+    }
+
+    /**
+     * Get number of stops on given route
+     *
+     * @param route  the index of the route
+     * @return       number of stops on the route
+     */
+    int numStopsOnRoute(int route) {
+        return routeStopOffsets[route + 1] - routeStopOffsets[route];
+    }
+
+    /**
+     * Get the i-th stop on given route
+     *
+     * @param route  the index of the route
+     * @param i      the position of the stop on the route, from 0 to numStopsOnRoute(route) - 1
+     * @return       the index of the stop
+     */
+    int stopOnRoute(int route, int i) {
+        return routeStops[routeStopOffsets[route] + i];
+    }
+
+    /**
+     * Get number of routes at given stop
+     *
+     * @param stop  the index of the stop
+     * @return      number of routes with the stop on them
+     */
+    int numRoutesAtStop(int stop) {
+        return stopRouteOffsets[stop + 1] - stopRouteOffsets[stop];
+    }
+
+    /**
+     * Get the i-th route at given stop, in increasing order of route index
+     *
+     * @param stop  the index of the stop
+     * @param i     the position of the route, from 0 to numRoutesAtStop(stop) - 1
+     * @return      the index of the route
+     */
+    int routeAtStop(int stop, int i) {
+        return stopRoutes[stopRouteOffsets[stop] + i];
+    }
+
+    /**
+     * Determine whether given stop is on given route
+     *
+     * @param stop   the index of the stop
+     * @param route  the index of the route
+     * @return       true if the stop is on the route
+     */
+    boolean isStopOnRoute(int stop, int route) {
+        return Arrays.binarySearch(stopRoutes, stopRouteOffsets[stop], stopRouteOffsets[stop + 1], route) >= 0;
+    }
+}
@@ -0,0 +1,327 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A spatial index over the segments of the paths of route patterns, used to find the parts of routes that are
+ * visible in a rectangle such as the area shown on the map.
+ *
+ * The segments of each path are grouped into blocks of SEGMENTS_PER_BLOCK consecutive segments, each with its
+ * bounding box.  Blocks are indexed by a uniform grid with cells the size of those of StopGrid: a block is listed in
+ * every cell its bounding box overlaps.  A query looks only at the cells overlapping the rectangle, skips blocks
+ * whose bounding box misses it, and tests the segments of the remaining blocks one by one.  Coordinates are the
+ * packed millionths of a degree of RoutePattern.
+ *
+ * The blocks of each pattern are consecutive, so a query limited to a few patterns, such as those of the routes
+ * through the selected stop, looks only at their blocks and never at the grid.
+ *
+ * The index does not hold on to the paths themselves: a query fetches the path of a pattern from the pattern only
+ * when one of its blocks overlaps the rectangle, so paths decoded lazily from a PathSource are decoded only for
+ * the patterns in view and can be dropped from the path cache between queries.  The index records the path each
+ * pattern had when it was built (see RoutePattern.getPathIdentity), and a pattern whose path has been replaced
+ * since is skipped.  The RouteManager rebuilds the index when patterns are added or paths replaced, using the
+ * version it was built from.
+ *
+ * An index is built once and never changed, so it may be queried on any thread.
+ */
+class SegmentIndex {
+    private static final int SEGMENTS_PER_BLOCK = 16;
+    private static final int CELL_SIZE = 10000;          // millionths of a degree, as StopGrid.CELL_SIZE
+
+    private final long version;
+    private final RoutePattern[] patterns;
+    private final Map<RoutePattern, Integer> patternIndexes;
+    private final Object[] pathIdentities;               // identity of the path of each pattern when indexed
+    private final int[] numPoints;                       // number of points on each path when indexed
+    private final int[] patternBlocks;                   // first block of each pattern, and one more for the end
+    private int numBlocks;
+    private final int[] blockPattern;                    // index of the pattern of each block
+    private final int[] blockFirst;                      // first segment of each block
+    private final int[] blockEnd;                        // segment after the last segment of each block
+    private final int[] blockSouth;
+    private final int[] blockNorth;
+    private final int[] blockWest;
+    private final int[] blockEast;
+    private final Map<Long, int[]> cells;
+
+    /**
+     * Build an index of the segments of the paths of given patterns, as they are now
+     *
+     * @param patterns  the route patterns
+     * @param version   the version of the patterns and paths from which the index is built
+     */
+    SegmentIndex(List<RoutePattern> patterns, long version) {
+        this.version = version;
+        this.patterns = patterns.toArray(new RoutePattern[patterns.size()]);
+        patternIndexes = new IdentityHashMap<>(this.patterns.length);
+        pathIdentities = new Object[this.patterns.length];
+        numPoints = new int[this.patterns.length];
+        patternBlocks = new int[this.patterns.length + 1];
+        int capacity = 0;
+        for (int p = 0; p < numPoints.length; p++) {
+            patternIndexes.put(this.patterns[p], p);
+            // the identity is read before the path, so a path replaced meanwhile is never taken for the new one
+            pathIdentities[p] = this.patterns[p].getPathIdentity();
+            numPoints[p] = this.patterns[p].getNumPoints();
+            capacity += (numPoints[p] + SEGMENTS_PER_BLOCK - 1) / SEGMENTS_PER_BLOCK;
+        }
+        blockPattern = new int[capacity];
+        blockFirst = new int[capacity];
+        blockEnd = new int[capacity];
+        blockSouth = new int[capacity];
+        blockNorth = new int[capacity];
+        blockWest = new int[capacity];
+        blockEast = new int[capacity];
+
+        // cell arrays are built with the number of blocks in slot 0, then trimmed
+        Map<Long, int[]> building = new HashMap<>();
+        for (int p = 0; p < numPoints.length; p++) {
+            patternBlocks[p] = numBlocks;
+            // read without caching, so that building the index does not drop the paths in use from the cache
+            int[] path = this.patterns[p].peekPackedPath();
+            if (path.length / 2 != numPoints[p]) {
+                continue;
+            }
+            int numSegments = numPoints[p] - 1;
+            for (int first = 0; first < numSegments; first += SEGMENTS_PER_BLOCK) {
+                int end = Math.min(first + SEGMENTS_PER_BLOCK, numSegments);
+                addBlock(p, path, first, end, building);
+            }
+        }
+        patternBlocks[numPoints.length] = numBlocks;
+        cells = new HashMap<>(building.size() * 4 / 3 + 1);
+        for (Map.Entry<Long, int[]> entry : building.entrySet()) {
+            int[] cell = entry.getValue();
+            cells.put(entry.getKey(), Arrays.copyOfRange(cell, 1, cell[0] + 1));
+        }
+    }
+
+    private void addBlock(int pattern, int[] path, int first, int end, Map<Long, int[]> building) {
+        int south = Integer.MAX_VALUE;
+        int north = Integer.MIN_VALUE;
+        int west = Integer.MAX_VALUE;
+        int east = Integer.MIN_VALUE;
+        for (int i = first; i <= end; i++) {
+            south = Math.min(south, path[2 * i]);
+            north = Math.max(north, path[2 * i]);
+            west = Math.min(west, path[2 * i + 1]);
+            east = Math.max(east, path[2 * i + 1]);
+        }
+        int block = numBlocks++;
+        blockPattern[block] = pattern;
+        blockFirst[block] = first;
+        blockEnd[block] = end;
+        blockSouth[block] = south;
+        blockNorth[block] = north;
+        blockWest[block] = west;
+        blockEast[block] = east;
+
+        for (int r = cellOf(south); r <= cellOf(north); r++) {
+            for (int c = cellOf(west); c <= cellOf(east); c++) {
+                Long key = key(r, c);
+                int[] cell = building.get(key);
+                if (cell == null) {
+                    cell = new int[4];
+                    building.put(key, cell);
+                } else if (cell[0] + 1 == cell.length) {
+                    cell = Arrays.copyOf(cell, cell.length * 2);
+                    building.put(key, cell);
+                }
+                cell[++cell[0]] = block;
+            }
+        }
+    }
+
+    /**
+     * Get the version of the patterns and paths from which this index was built
+     *
+     * @return  the version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Find the parts of paths that are inside or cross the rectangle formed by northWest and southEast.
+     * Consecutive segments that touch the rectangle are merged into a single run.
+     *
+     * @param northWest  the coordinate of the north west corner of the rectangle
+     * @param southEast  the coordinate of the south east corner of the rectangle
+     * @return           the runs, ordered by pattern and then by position along the path
+     */
+    List<PathRun> runsInRectangle(LatLon northWest, LatLon southEast) {
+        return runsInRectangle(northWest, southEast, null);
+    }
+
+    /**
+     * Find the parts of the paths of the given patterns that are inside or cross the rectangle formed by northWest
+     * and southEast, as runsInRectangle(northWest, southEast) does.  Patterns that are not in the index are
+     * ignored.
+     *
+     * @param northWest  the coordinate of the north west corner of the rectangle
+     * @param southEast  the coordinate of the south east corner of the rectangle
+     * @param only       the patterns whose paths are searched; null for all patterns
+     * @return           the runs, ordered by pattern as in the index and then by position along the path
+     */
+    List<PathRun> runsInRectangle(LatLon northWest, LatLon southEast, Collection<RoutePattern> only) {
+        double south = southEast.getLatitude() * 1e6;
+        double north = northWest.getLatitude() * 1e6;
+        double west = northWest.getLongitude() * 1e6;
+        double east = southEast.getLongitude() * 1e6;
+        Hits hits = new Hits();
+        if (south > north || west > east) {
+            return hits.toRuns();
+        }
+        if (only != null) {
+            BitSet searched = new BitSet(patterns.length);
+            for (RoutePattern pattern : only) {
+                Integer p = patternIndexes.get(pattern);
+                if (p == null || searched.get(p)) {
+                    continue;
+                }
+                searched.set(p);
+                for (int block = patternBlocks[p]; block < patternBlocks[p + 1]; block++) {
+                    addHits(block, south, north, west, east, hits);
+                }
+            }
+            return hits.toRuns();
+        }
+
+        int firstRow = cellOf(south);
+        int lastRow = cellOf(north);
+        int firstCol = cellOf(west);
+        int lastCol = cellOf(east);
+        if ((double) (lastRow - firstRow + 1) * (lastCol - firstCol + 1) > cells.size()) {
+            for (int block = 0; block < numBlocks; block++) {
+                addHits(block, south, north, west, east, hits);
+            }
+        } else {
+            BitSet visited = new BitSet(numBlocks);
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int c = firstCol; c <= lastCol; c++) {
+                    int[] cell = cells.get(key(r, c));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int block : cell) {
+                        if (!visited.get(block)) {
+                            visited.set(block);
+                            addHits(block, south, north, west, east, hits);
+                        }
+                    }
+                }
+            }
+        }
+        return hits.toRuns();
+    }
+
+    private void addHits(int block, double south, double north, double west, double east, Hits hits) {
+        if (blockNorth[block] < south || blockSouth[block] > north
+                || blockEast[block] < west || blockWest[block] > east) {
+            return;
+        }
+        int pattern = blockPattern[block];
+        int[] path = hits.pathOf(pattern);
+        if (path == null) {
+            return;
+        }
+        for (int s = blockFirst[block]; s < blockEnd[block]; s++) {
+            if (segmentTouches(path[2 * s], path[2 * s + 1], path[2 * s + 2], path[2 * s + 3],
+                    south, north, west, east)) {
+                hits.add(pattern, s);
+            }
+        }
+    }
+
+    /**
+     * Return true if the segment from (lat1, lon1) to (lat2, lon2) has a point inside or on the boundary of the
+     * rectangle: the bounding boxes must overlap, and the corners of the rectangle must not all lie strictly on the
+     * same side of the line through the segment.
+     */
+    private static boolean segmentTouches(int lat1, int lon1, int lat2, int lon2,
+                                          double south, double north, double west, double east) {
+        if (Math.max(lat1, lat2) < south || Math.min(lat1, lat2) > north
+                || Math.max(lon1, lon2) < west || Math.min(lon1, lon2) > east) {
+            return false;
+        }
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        double sw = dLon * (south - lat1) - dLat * (west - lon1);
+        double se = dLon * (south - lat1) - dLat * (east - lon1);
+        double nw = dLon * (north - lat1) - dLat * (west - lon1);
+        double ne = dLon * (north - lat1) - dLat * (east - lon1);
+        return !((sw > 0 && se > 0 && nw > 0 && ne > 0) || (sw < 0 && se < 0 && nw < 0 && ne < 0));
+    }
+
+    private static int cellOf(double microdegrees) {
+        return (int) Math.floor(microdegrees / CELL_SIZE);
+    }
+
+    private static Long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    /**
+     * The segments found by a query, each packed as pattern index and segment index in a long, and the paths in
+     * which they were found
+     */
+    private class Hits {
+        private long[] hits = new long[64];
+        private int size = 0;
+        private final int[][] paths = new int[patterns.length][];
+
+        /**
+         * Return the path of the pattern with the given index, fetching it the first time it is needed in this
+         * query; null if its path has been replaced since it was indexed
+         */
+        int[] pathOf(int pattern) {
+            int[] path = paths[pattern];
+            if (path == null) {
+                if (patterns[pattern].getPathIdentity() != pathIdentities[pattern]) {
+                    return null;
+                }
+                path = patterns[pattern].getPackedPath();
+                if (path.length / 2 != numPoints[pattern]) {
+                    return null;
+                }
+                paths[pattern] = path;
+            }
+            return path;
+        }
+
+        void add(int pattern, int segment) {
+            if (size == hits.length) {
+                hits = Arrays.copyOf(hits, size * 2);
+            }
+            hits[size++] = ((long) pattern << 32) | segment;
+        }
+
+        List<PathRun> toRuns() {
+            List<PathRun> runs = new ArrayList<>();
+            Arrays.sort(hits, 0, size);
+            int i = 0;
+            while (i < size) {
+                int pattern = (int) (hits[i] >>> 32);
+                int first = (int) hits[i];
+                int last = first;
+                i++;
+                while (i < size && hits[i] == (((long) pattern << 32) | (last + 1))) {
+                    last++;
+                    i++;
+                }
+                // a run of segments first..last covers points first..last + 1
+                runs.add(new PathRun(patterns[pattern], paths[pattern], first, last + 1));
+            }
+            return runs;
+        }
+    }
+}
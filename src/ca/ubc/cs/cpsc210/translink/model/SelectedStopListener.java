@@ -0,0 +1,14 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+/**
+ * Handles changes to the stop selected in the stop manager
+ */
+public interface SelectedStopListener {
+
+    /**
+     * Called when the selected stop has changed
+     *
+     * @param selected  the stop now selected (null if the selection has been cleared)
+     */
+    void onSelectedStopChanged(Stop selected);
+}
@@ -3,6 +3,7 @@ package ca.ubc.cs.cpsc210.translink.model;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a bus stop with an number, name, location (lat/lon)
@@ -10,11 +11,13 @@ import java.util.*;
  */
 
 public class Stop implements Iterable<Arrival> {
-    private int number;
+    private final int number;
     private String name;
-    private LatLon latLon;
+    private volatile LatLon latLon;
     private List<Arrival> arrivals = new ArrayList<>();
-    private Set<Route> routes;
+    // Routes with stops at this stop; a stop is on only a few routes, so a list is smaller than a hash set
+    // and as quick to search, and cheap to copy on write, so that it may be read while routes are linked
+    private final CopyOnWriteArrayList<Route> routes;
 
     /**
      * Constructs a stop with given number, name and location.
@@ -28,7 +31,7 @@ public class Stop implements Iterable<Arrival> {
         this.number=number;
         this.name=name;
         this.latLon=locn;
-        this.routes=new HashSet<>();
+        this.routes=new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -60,7 +63,22 @@ public class Stop implements Iterable<Arrival> {
      * @return      the set of routes using this stop
      */
     public Set<Route> getRoutes() {
-        return Collections.unmodifiableSet(routes);
+        return new AbstractSet<Route>() {
+            @Override
+            public Iterator<Route> iterator() {
+                return Collections.unmodifiableList(routes).iterator();
+            }
+
+            @Override
+            public int size() {
+                return routes.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return routes.contains(o);
+            }
+        };
     }
 
     /**
@@ -69,8 +87,7 @@ public class Stop implements Iterable<Arrival> {
      * @param route  the route to add
      */
     public void addRoute(Route route) {
-        if(!route.hasStop(this)){
-            routes.add(route);
+        if(routes.addIfAbsent(route)){
             route.addStop(this);
         }
     }
@@ -81,8 +98,7 @@ public class Stop implements Iterable<Arrival> {
      * @param route the route to remove
      */
     public void removeRoute(Route route) {
-        if(route.hasStop(this)) {
-            routes.remove(route);
+        if(routes.remove(route)) {
             route.removeStop(this);
         }
     }
@@ -98,13 +114,24 @@ public class Stop implements Iterable<Arrival> {
 
     /**
      * Add bus arrival travelling on a particular route at this stop.
-     * Arrivals are to be sorted in order by arrival time
+     * Arrivals are kept in order by arrival time; the arrival goes after any with the same time,
+     * so arrivals with equal times stay in the order in which they were added.
      *
      * @param arrival  the bus arrival to add to stop
      */
     public void addArrival(Arrival arrival) {
-        arrivals.add(arrival);
-        Collections.sort(arrivals);
+        // binary search for the first arrival that is later than this one
+        int low = 0;
+        int high = arrivals.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (arrivals.get(mid).compareTo(arrival) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        arrivals.add(low, arrival);
     }
 
     /**
@@ -156,6 +183,10 @@ public class Stop implements Iterable<Arrival> {
      * @param locn      the new location
      */
     public void setLocn(LatLon locn) {
+        LatLon oldLocn=this.latLon;
         this.latLon=locn;
+        if(!locn.equals(oldLocn)){
+            StopManager.getInstance().stopMoved(this);
+        }
     }
 }
@@ -0,0 +1,121 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+
+/**
+ * A column store of stop locations.
+ *
+ * The latitude, longitude and cosine of latitude of each stop are held in primitive arrays indexed by the
+ * position at which the stop was added, so that geometric queries can scan locations in tight loops without
+ * following a reference to a Stop and then to its LatLon for every candidate.  The Stop itself is kept in a parallel
+ * array and is only looked up for stops that are actually returned.  The cosine of latitude is computed once when
+ * the stop is added, rather than for every distance measured to the stop.
+ *
+ * Only the columns that geometric queries scan are kept here.  Stop numbers are looked up through the sorted
+ * numbers of the TransitSnapshot, and the routes at each stop through its RouteStopIncidence, which holds them by
+ * snapshot index in compressed rows, so there is no column of stop numbers or of route indexes.
+ *
+ * Columns are filled in while their StopGrid is built and only read after that.
+ */
+class StopColumns {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private double[] lat;
+    private double[] lon;
+    private double[] cosLat;
+    private Stop[] stops;
+    private int size;
+
+    /**
+     * Constructs an empty column store
+     */
+    StopColumns() {
+        lat = new double[INITIAL_CAPACITY];
+        lon = new double[INITIAL_CAPACITY];
+        cosLat = new double[INITIAL_CAPACITY];
+        stops = new Stop[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Add stop at its current location
+     *
+     * @param stop  the stop to add
+     * @return      the index of the stop in the columns
+     */
+    int add(Stop stop) {
+        if (size == stops.length) {
+            grow(size * 2);
+        }
+        int index = size;
+        LatLon locn = stop.getLocn();
+        lat[index] = locn.getLatitude();
+        lon[index] = locn.getLongitude();
+        cosLat[index] = SphericalGeometry.cosLatitude(lat[index]);
+        stops[index] = stop;
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Get number of stops in the columns
+     *
+     * @return  number of stops
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the latitude column; entries at or beyond size() are unused
+     *
+     * @return  latitudes of stops in degrees, by index
+     */
+    double[] latitudes() {
+        return lat;
+    }
+
+    /**
+     * Get the longitude column; entries at or beyond size() are unused
+     *
+     * @return  longitudes of stops in degrees, by index
+     */
+    double[] longitudes() {
+        return lon;
+    }
+
+    /**
+     * Get the column of cosines of latitude; entries at or beyond size() are unused
+     *
+     * @return  cosines of the latitudes of stops, by index
+     */
+    double[] cosLatitudes() {
+        return cosLat;
+    }
+
+    /**
+     * Get stop at given index
+     *
+     * @param index  the index of the stop
+     * @return       the stop
+     */
+    Stop stop(int index) {
+        return stops[index];
+    }
+
+    private void grow(int capacity) {
+        double[] newLat = new double[capacity];
+        double[] newLon = new double[capacity];
+        double[] newCosLat = new double[capacity];
+        Stop[] newStops = new Stop[capacity];
+        System.arraycopy(lat, 0, newLat, 0, size);
+        System.arraycopy(lon, 0, newLon, 0, size);
+        System.arraycopy(cosLat, 0, newCosLat, 0, size);
+        System.arraycopy(stops, 0, newStops, 0, size);
+        lat = newLat;
+        lon = newLon;
+        cosLat = newCosLat;
+        stops = newStops;
+    }
+}
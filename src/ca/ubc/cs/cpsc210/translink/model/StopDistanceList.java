@@ -0,0 +1,149 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of stops paired with their distances from some point.
+ *
+ * Stops and distances are held in parallel arrays so that candidates can be collected, kept as a bounded
+ * max-heap and sorted by distance without allocating anything per stop.
+ */
+class StopDistanceList {
+    private Stop[] stops;
+    private double[] distances;
+    private int size;
+
+    /**
+     * Constructs an empty list with room for the given number of stops
+     *
+     * @param capacity  the initial capacity
+     */
+    StopDistanceList(int capacity) {
+        stops = new Stop[Math.max(capacity, 1)];
+        distances = new double[stops.length];
+        size = 0;
+    }
+
+    /**
+     * Get number of stops in the list
+     *
+     * @return  number of stops in the list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add stop at given distance to the end of the list
+     *
+     * @param stop      the stop
+     * @param distance  the distance of the stop in metres
+     */
+    void add(Stop stop, double distance) {
+        if (size == stops.length) {
+            Stop[] newStops = new Stop[size * 2];
+            double[] newDistances = new double[size * 2];
+            System.arraycopy(stops, 0, newStops, 0, size);
+            System.arraycopy(distances, 0, newDistances, 0, size);
+            stops = newStops;
+            distances = newDistances;
+        }
+        stops[size] = stop;
+        distances[size] = distance;
+        size++;
+    }
+
+    /**
+     * Offer stop to a list kept as a max-heap of at most limit stops.  The stop is added if the heap is not yet
+     * full, or replaces the farthest stop in the heap if it is closer than that stop.
+     *
+     * @param stop      the stop
+     * @param distance  the distance of the stop in metres
+     * @param limit     the maximum number of stops to keep
+     * @return          true if the stop was kept
+     */
+    boolean offer(Stop stop, double distance, int limit) {
+        if (size < limit) {
+            add(stop, distance);
+            siftUp(size - 1);
+            return true;
+        }
+        if (size > 0 && distance < distances[0]) {
+            stops[0] = stop;
+            distances[0] = distance;
+            siftDown(0, size);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the greatest distance in a list kept as a max-heap
+     *
+     * @return  the distance of the farthest stop; positive infinity if the list is empty
+     */
+    double maxDistance() {
+        return size == 0 ? Double.POSITIVE_INFINITY : distances[0];
+    }
+
+    /**
+     * Sort the stops by distance, closest first, and return them as a list
+     *
+     * @return  the stops ordered by increasing distance
+     */
+    List<Stop> toSortedList() {
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i, size);
+        }
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+
+        List<Stop> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(stops[i]);
+        }
+        return sorted;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (distances[parent] >= distances[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int largest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < end && distances[left] > distances[largest]) {
+                largest = left;
+            }
+            if (right < end && distances[right] > distances[largest]) {
+                largest = right;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Stop stop = stops[i];
+        stops[i] = stops[j];
+        stops[j] = stop;
+        double distance = distances[i];
+        distances[i] = distances[j];
+        distances[j] = distance;
+    }
+}
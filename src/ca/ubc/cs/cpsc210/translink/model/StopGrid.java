@@ -0,0 +1,431 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A uniform grid over latitude and longitude used to index stops by location.
+ *
+ * Each cell covers CELL_SIZE degrees of latitude and longitude and holds the indexes, in the grid's StopColumns,
+ * of the stops located in it, so that a nearest stop query only has to look at the cells around the query point
+ * and can compute distances straight from the latitude, longitude and cosine of latitude columns.  Occupied cells
+ * are found in an open addressing table keyed by row and column packed into a long, with linear probing from a
+ * Fibonacci hash of the key, so that looking up a cell neither boxes its key nor follows a reference to an entry.
+ * The stops in a cell are chained through an int array parallel to the columns: each slot of the table holds the
+ * index of the last stop added to its cell, and each stop the index of the one added to the cell before it.
+ *
+ * Before the exact distance of a candidate is computed, its cheap equirectangular distance is used to rule it out
+ * when it cannot be close enough.
+ *
+ * A grid is filled in once, when its TransitSnapshot is built, and only queried after that, so queries may run
+ * on any thread without locking.  A stop that moves is indexed at its new location by the next snapshot.
+ */
+class StopGrid {
+    static final double CELL_SIZE = 0.01;                // size of one cell in degrees (about 1.1km x 0.7km in Vancouver)
+    private static final double EARTH_RADIUS = 6371000;  // radius of earth in metres, as used by SphericalGeometry
+    private static final int NUM_COLUMNS = (int) Math.round(360.0 / CELL_SIZE);   // columns once round the world
+    private static final int INITIAL_CAPACITY = 16;      // must be a power of two
+    private static final double MAX_LOAD = 0.5;
+
+    private final StopColumns columns;
+    // keys of the occupied cells, and the index of the last stop added to each; -1 in an empty slot
+    private long[] cellKeys;
+    private int[] lastInCell;
+    private int numCells;
+    // index of the stop added to the same cell before each stop; -1 for the first stop in a cell
+    private int[] previousInCell;
+
+    /**
+     * Constructs an empty grid
+     */
+    StopGrid() {
+        columns = new StopColumns();
+        cellKeys = new long[INITIAL_CAPACITY];
+        lastInCell = new int[INITIAL_CAPACITY];
+        Arrays.fill(lastInCell, -1);
+        numCells = 0;
+        previousInCell = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add stop to the grid at its current location
+     *
+     * @param stop  the stop to add
+     */
+    void add(Stop stop) {
+        int index = columns.add(stop);
+        if (index == previousInCell.length) {
+            previousInCell = Arrays.copyOf(previousInCell, index * 2);
+        }
+        LatLon locn = stop.getLocn();
+        long key = key(cellOf(locn.getLatitude()), wrapColumn(cellOf(locn.getLongitude())));
+        int slot = slotOf(key);
+        if (lastInCell[slot] < 0) {
+            if (numCells + 1 > cellKeys.length * MAX_LOAD) {
+                growCells();
+                slot = slotOf(key);
+            }
+            cellKeys[slot] = key;
+            numCells++;
+        }
+        previousInCell[index] = lastInCell[slot];
+        lastInCell[slot] = index;
+    }
+
+    /**
+     * Return the index of the last stop added to the cell at (row, col), from which the others are found through
+     * previousInCell; -1 if the cell is empty.  Columns past the antimeridian wrap round to the other side.
+     */
+    private int lastInCell(int row, int col) {
+        return lastInCell[slotOf(key(row, wrapColumn(col)))];
+    }
+
+    /**
+     * Return the slot of the cell with given key, or the empty slot at which it would be added
+     */
+    private int slotOf(long key) {
+        int mask = cellKeys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(cellKeys.length)));
+        while (lastInCell[slot] >= 0 && cellKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void growCells() {
+        long[] oldKeys = cellKeys;
+        int[] oldLast = lastInCell;
+        cellKeys = new long[oldKeys.length * 2];
+        lastInCell = new int[oldKeys.length * 2];
+        Arrays.fill(lastInCell, -1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLast[i] >= 0) {
+                int slot = slotOf(oldKeys[i]);
+                cellKeys[slot] = oldKeys[i];
+                lastInCell[slot] = oldLast[i];
+            }
+        }
+    }
+
+    /**
+     * Find nearest stop to given point that is less than radius metres away.
+     *
+     * Cells are visited in rings of increasing size around the cell containing pt.  The search stops
+     * as soon as no stop outside the rings visited so far can be closer than the best stop found, or, once the
+     * rings cover more cells than the grid has occupied cells, finishes by looking at every stop.
+     *
+     * @param pt      point to which nearest stop is sought
+     * @param radius  distance in metres beyond which stops are ignored
+     * @return        stop closest to pt; null if no stop is within radius metres of pt
+     */
+    Stop findNearestTo(LatLon pt, double radius) {
+        double ptLat = pt.getLatitude();
+        double ptLon = pt.getLongitude();
+        int row = cellOf(ptLat);
+        int col = cellOf(ptLon);
+        int nearest = -1;
+        double closestDistance = radius;
+        double cosLat = SphericalGeometry.cosLatitude(ptLat);
+        double lowerBound = lowerBoundFactor(ptLat, radius);
+
+        double[] lat = columns.latitudes();
+        double[] lon = columns.longitudes();
+        double[] cosLats = columns.cosLatitudes();
+        for (int ring = 0; ring * CELL_SIZE <= 180.0; ring++) {
+            if (scanIsCheaper(ring)) {
+                return nearestOfAll(ptLat, ptLon, cosLat, lowerBound, radius);
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean edgeRow = (r == row - ring || r == row + ring);
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = col - ring; c <= col + ring; c += step) {
+                    for (int index = lastInCell(r, c); index >= 0; index = previousInCell[index]) {
+                        if (SphericalGeometry.equirectangularDistance(ptLat, ptLon, lat[index], lon[index], cosLat)
+                                * lowerBound >= closestDistance) {
+                            continue;
+                        }
+                        double distance = SphericalGeometry.distanceBetween(lat[index], lon[index], cosLats[index],
+                                ptLat, ptLon, cosLat);
+                        if (distance < closestDistance) {
+                            nearest = index;
+                            closestDistance = distance;
+                        }
+                    }
+                }
+            }
+            if (distanceOutside(pt, row, col, ring) >= closestDistance) {
+                break;
+            }
+        }
+        return nearest < 0 ? null : columns.stop(nearest);
+    }
+
+    /**
+     * Return true if the block of cells within ring cells of the query cell has more cells than the grid has
+     * occupied cells, so that looking at every stop costs less than visiting the rings.  This is what bounds a
+     * search near the poles, where distanceOutside can rule out little beyond the rings' latitudes, so that the
+     * rings would otherwise grow until they span the whole band of latitudes around the world.  As there are
+     * far fewer occupied cells than NUM_COLUMNS squared, the scan also takes over before the rings, whose columns
+     * wrap round the antimeridian, reach all the way round the world and visit a column twice.
+     */
+    private boolean scanIsCheaper(int ring) {
+        double side = 2.0 * ring + 1;
+        return side * side > numCells;
+    }
+
+    /**
+     * Find the nearest stop less than radius metres from (ptLat, ptLon) by looking at every stop
+     */
+    private Stop nearestOfAll(double ptLat, double ptLon, double cosLat, double lowerBound, double radius) {
+        double[] lat = columns.latitudes();
+        double[] lon = columns.longitudes();
+        double[] cosLats = columns.cosLatitudes();
+        int nearest = -1;
+        double closestDistance = radius;
+        for (int index = 0; index < columns.size(); index++) {
+            if (SphericalGeometry.equirectangularDistance(ptLat, ptLon, lat[index], lon[index], cosLat)
+                    * lowerBound >= closestDistance) {
+                continue;
+            }
+            double distance = SphericalGeometry.distanceBetween(lat[index], lon[index], cosLats[index],
+                    ptLat, ptLon, cosLat);
+            if (distance < closestDistance) {
+                nearest = index;
+                closestDistance = distance;
+            }
+        }
+        return nearest < 0 ? null : columns.stop(nearest);
+    }
+
+    /**
+     * Find the k stops nearest to given point that are less than radius metres away.
+     *
+     * Cells are visited in rings as in findNearestTo, and every stop is looked at once the rings cover more cells
+     * than the grid has occupied cells.  Once k stops have been found, stops lying outside the bounding box of the
+     * circle through the farthest of them are rejected before their distance is computed.
+     *
+     * @param pt      point to which nearest stops are sought
+     * @param k       the maximum number of stops to return
+     * @param radius  distance in metres beyond which stops are ignored
+     * @return        up to k stops within radius metres of pt, ordered by increasing distance from pt
+     */
+    List<Stop> findKNearest(LatLon pt, int k, double radius) {
+        if (k <= 0) {
+            return new StopDistanceList(0).toSortedList();
+        }
+        // no more than every stop can be found, however large k is
+        StopDistanceList nearest = new StopDistanceList(Math.min(k, columns.size()));
+        double ptLat = pt.getLatitude();
+        double ptLon = pt.getLongitude();
+        int row = cellOf(ptLat);
+        int col = cellOf(ptLon);
+        double bound = radius;
+        double latHalfWidth = latHalfWidth(bound);
+        double lonHalfWidth = lonHalfWidth(ptLat, bound);
+        double cosLat = SphericalGeometry.cosLatitude(ptLat);
+        double lowerBound = lowerBoundFactor(ptLat, radius);
+
+        double[] lat = columns.latitudes();
+        double[] lon = columns.longitudes();
+        double[] cosLats = columns.cosLatitudes();
+        for (int ring = 0; ring * CELL_SIZE <= 180.0; ring++) {
+            if (scanIsCheaper(ring)) {
+                return kNearestOfAll(ptLat, ptLon, cosLat, k, radius);
+            }
+            for (int r = row - ring; r <= row + ring; r++) {
+                boolean edgeRow = (r == row - ring || r == row + ring);
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = col - ring; c <= col + ring; c += step) {
+                    for (int index = lastInCell(r, c); index >= 0; index = previousInCell[index]) {
+                        if (Math.abs(lat[index] - ptLat) > latHalfWidth || lonDifference(lon[index], ptLon) > lonHalfWidth
+                                || SphericalGeometry.equirectangularDistance(ptLat, ptLon, lat[index], lon[index], cosLat)
+                                * lowerBound >= bound) {
+                            continue;
+                        }
+                        double distance = SphericalGeometry.distanceBetween(lat[index], lon[index], cosLats[index],
+                                ptLat, ptLon, cosLat);
+                        if (distance < bound && nearest.offer(columns.stop(index), distance, k) && nearest.size() == k) {
+                            bound = nearest.maxDistance();
+                            latHalfWidth = latHalfWidth(bound);
+                            lonHalfWidth = lonHalfWidth(ptLat, bound);
+                        }
+                    }
+                }
+            }
+            if (distanceOutside(pt, row, col, ring) >= bound) {
+                break;
+            }
+        }
+        return nearest.toSortedList();
+    }
+
+    /**
+     * Find the k nearest stops less than radius metres from (ptLat, ptLon) by looking at every stop
+     */
+    private List<Stop> kNearestOfAll(double ptLat, double ptLon, double cosLat, int k, double radius) {
+        StopDistanceList nearest = new StopDistanceList(Math.min(k, columns.size()));
+        double[] lat = columns.latitudes();
+        double[] lon = columns.longitudes();
+        double[] cosLats = columns.cosLatitudes();
+        double bound = radius;
+        double lowerBound = lowerBoundFactor(ptLat, radius);
+        for (int index = 0; index < columns.size(); index++) {
+            if (SphericalGeometry.equirectangularDistance(ptLat, ptLon, lat[index], lon[index], cosLat)
+                    * lowerBound >= bound) {
+                continue;
+            }
+            double distance = SphericalGeometry.distanceBetween(lat[index], lon[index], cosLats[index],
+                    ptLat, ptLon, cosLat);
+            if (distance < bound && nearest.offer(columns.stop(index), distance, k) && nearest.size() == k) {
+                bound = nearest.maxDistance();
+            }
+        }
+        return nearest.toSortedList();
+    }
+
+    /**
+     * Find all stops within given distance of given point.
+     *
+     * Only the cells overlapping the bounding box of the circle of the given radius around pt are visited, or the
+     * occupied cells when the bounding box covers more cells than that, and stops outside the bounding box are
+     * rejected before their distance is computed.
+     *
+     * @param pt      the centre of the circle
+     * @param metres  the radius of the circle in metres
+     * @return        the stops no more than metres away from pt, ordered by increasing distance from pt
+     */
+    List<Stop> findWithin(LatLon pt, double metres) {
+        StopDistanceList within = new StopDistanceList(16);
+        double ptLat = pt.getLatitude();
+        double ptLon = pt.getLongitude();
+        double latHalfWidth = latHalfWidth(metres);
+        double lonHalfWidth = lonHalfWidth(ptLat, metres);
+        int firstRow = cellOf(ptLat - latHalfWidth);
+        int lastRow = cellOf(ptLat + latHalfWidth);
+        int firstCol = cellOf(ptLon - lonHalfWidth);
+        // columns wrap round the antimeridian, so no more than once round the world need be visited
+        int lastCol = Math.min(cellOf(ptLon + lonHalfWidth), firstCol + NUM_COLUMNS - 1);
+        double cosLat = SphericalGeometry.cosLatitude(ptLat);
+        double lowerBound = lowerBoundFactor(ptLat, metres);
+
+        if ((double) (lastRow - firstRow + 1) * (lastCol - firstCol + 1) > numCells) {
+            for (int last : lastInCell) {
+                addWithin(last, ptLat, ptLon, cosLat, latHalfWidth, lonHalfWidth, lowerBound, metres, within);
+            }
+        } else {
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int c = firstCol; c <= lastCol; c++) {
+                    addWithin(lastInCell(r, c), ptLat, ptLon, cosLat, latHalfWidth, lonHalfWidth, lowerBound, metres,
+                            within);
+                }
+            }
+        }
+        return within.toSortedList();
+    }
+
+    /**
+     * Add the stops in the cell whose last stop added is last, if any, that are no more than metres from
+     * (ptLat, ptLon) to within
+     */
+    private void addWithin(int last, double ptLat, double ptLon, double cosLat, double latHalfWidth,
+                           double lonHalfWidth, double lowerBound, double metres, StopDistanceList within) {
+        double[] lat = columns.latitudes();
+        double[] lon = columns.longitudes();
+        double[] cosLats = columns.cosLatitudes();
+        for (int index = last; index >= 0; index = previousInCell[index]) {
+            if (Math.abs(lat[index] - ptLat) > latHalfWidth || lonDifference(lon[index], ptLon) > lonHalfWidth
+                    || SphericalGeometry.equirectangularDistance(ptLat, ptLon, lat[index], lon[index], cosLat)
+                    * lowerBound > metres) {
+                continue;
+            }
+            double distance = SphericalGeometry.distanceBetween(lat[index], lon[index], cosLats[index],
+                    ptLat, ptLon, cosLat);
+            if (distance <= metres) {
+                within.add(columns.stop(index), distance);
+            }
+        }
+    }
+
+    /**
+     * Return the factor by which the equirectangular distance of a point from one at latitude ptLat can be multiplied
+     * to give a lower bound on its exact distance, provided the exact distance is less than limit metres; 0 (so that
+     * no point is ruled out) where SphericalGeometry does not guarantee the error of the equirectangular distance
+     */
+    private static double lowerBoundFactor(double ptLat, double limit) {
+        if (limit > SphericalGeometry.EQUIRECTANGULAR_MAX_DISTANCE
+                || Math.abs(ptLat) > SphericalGeometry.EQUIRECTANGULAR_MAX_LATITUDE) {
+            return 0.0;
+        }
+        return 1.0 - SphericalGeometry.EQUIRECTANGULAR_ERROR;
+    }
+
+    /**
+     * Return half the height in degrees of the bounding box of a circle with the given radius in metres
+     */
+    private static double latHalfWidth(double metres) {
+        return Math.toDegrees(metres / EARTH_RADIUS);
+    }
+
+    /**
+     * Return half the width in degrees of the bounding box of a circle with the given radius in metres
+     * centred at the given latitude; 180 degrees if the circle contains a pole
+     */
+    private static double lonHalfWidth(double lat, double metres) {
+        double angle = metres / EARTH_RADIUS;
+        double cosLat = Math.cos(Math.toRadians(lat));
+        if (angle >= Math.PI / 2 || Math.sin(angle) >= cosLat) {
+            return 180.0;
+        }
+        return Math.toDegrees(Math.asin(Math.sin(angle) / cosLat));
+    }
+
+    /**
+     * Return the difference in degrees between two longitudes the short way round, from 0 to 180
+     */
+    private static double lonDifference(double lon1, double lon2) {
+        double difference = Math.abs(lon1 - lon2);
+        return difference > 180.0 ? 360.0 - difference : difference;
+    }
+
+    /**
+     * Return a lower bound on the distance in metres from pt to any point lying outside the block of
+     * cells within ring cells of (row, col)
+     */
+    private static double distanceOutside(LatLon pt, int row, int col, int ring) {
+        double south = (row - ring) * CELL_SIZE;
+        double north = (row + ring + 1) * CELL_SIZE;
+        double west = (col - ring) * CELL_SIZE;
+        double east = (col + ring + 1) * CELL_SIZE;
+
+        double latGap = Math.min(pt.getLatitude() - south, north - pt.getLatitude());
+        double lonGap = Math.min(pt.getLongitude() - west, east - pt.getLongitude());
+
+        // points beyond the block in latitude are at least latGap away along a meridian;
+        // points beyond it in longitude are closest when they lie as far from the equator as the block reaches
+        double maxLat = Math.min(90.0, Math.max(Math.abs(south), Math.abs(north)));
+        double latBound = Math.toRadians(latGap) * EARTH_RADIUS;
+        double lonBound = 2.0 * Math.asin(Math.min(1.0, Math.cos(Math.toRadians(maxLat))
+                * Math.sin(Math.toRadians(lonGap) / 2.0))) * EARTH_RADIUS;
+
+        return Math.min(latBound, lonBound);
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE);
+    }
+
+    /**
+     * Return the column, from -NUM_COLUMNS / 2 to NUM_COLUMNS / 2 - 1, that col is once wrapped round the world
+     */
+    private static int wrapColumn(int col) {
+        int wrapped = (col + NUM_COLUMNS / 2) % NUM_COLUMNS;
+        return (wrapped < 0 ? wrapped + NUM_COLUMNS : wrapped) - NUM_COLUMNS / 2;
+    }
+
+    private static long key(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+}
@@ -2,33 +2,63 @@ package ca.ubc.cs.cpsc210.translink.model;
 
 import ca.ubc.cs.cpsc210.translink.model.exception.StopException;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
-import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
 
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Manages all bus stops.
  *
  * Singleton pattern applied to ensure only a single instance of this class that
  * is globally accessible throughout application.
+ *
+ * The stop manager may be used from any thread.  Stops are added to a live table under a single write lock,
+ * while queries run on an immutable TransitSnapshot of the stops and routes, published by swapping a single
+ * reference, so a query never sees a half-built index and carries on with the snapshot it started on.  A change
+ * to the network only marks the published snapshot as out of date; the next query rebuilds it, once for however
+ * many changes were made since.  Moving a single stop is the exception: a snapshot with just that stop moved is
+ * derived from the published one at once, so following a moving location does not rebuild the whole network.
+ *
+ * To make many changes at once, such as parsing a file, call beginUpdate before the changes and endUpdate after
+ * them; queries then keep answering from the snapshot published before, and the new one is built at the end.
+ * To reload the network without readers seeing it empty, call beginReload, parse the new data, then call
+ * endReload.  Until endReload publishes the new snapshot, queries keep answering from the old one.
  */
 
 public class StopManager implements Iterable<Stop> {
     public static final int RADIUS = 10000;
-    private static StopManager instance;
-    // Use this field to hold all of the stops.
-    // Do not change this field or its type, as the iterator method depends on it
-    private Map<Integer, Stop> stopMap;
-    private Stop selected;
+    // Use this field to hold all of the stops, keyed by stop number; replaced as a whole when stops are cleared
+    private volatile StopTable stopTable;
+    // The stops and routes as last published, with the indexes used to query them
+    private final AtomicReference<TransitSnapshot> snapshot;
+    // Incremented whenever a stop or route is added, moved or removed; only changed with writeLock held
+    private volatile long version;
+    // Number of beginUpdate calls not yet matched by endUpdate; only changed with writeLock held
+    private volatile int updateDepth;
+    // True between beginReload and endReload, while stops not yet reloaded are taken from the published snapshot
+    private volatile boolean reloading;
+    // True when a reload has ended but its snapshot has not been published yet; guarded by writeLock
+    private boolean reloaded;
+    // Held while stopTable is being changed or a snapshot is being published
+    private final Object writeLock;
+    private volatile Stop selected;
+    private final CopyOnWriteArrayList<SelectedStopListener> selectionListeners;
 
     /**
      * Constructs stop manager with empty collection of stops and null as the selected stop
      */
     private StopManager() {
-        stopMap=new HashMap<>();
+        stopTable=new StopTable();
+        snapshot=new AtomicReference<>(TransitSnapshot.EMPTY);
+        version=0;
+        updateDepth=0;
+        reloading=false;
+        reloaded=false;
+        writeLock=new Object();
         selected=null;
+        selectionListeners=new CopyOnWriteArrayList<>();
     }
 
     /**
@@ -38,11 +68,14 @@ public class StopManager implements Iterable<Stop> {
      */
     public static StopManager getInstance() {
         // Do not modify the implementation of this method!
-        if(instance == null) {
-            instance = new StopManager();
-        }
+        return InstanceHolder.INSTANCE;
+    }
 
-        return instance;
+    /**
+     * Holds the instance, which is created and safely published the first time getInstance is called
+     */
+    private static class InstanceHolder {
+        private static final StopManager INSTANCE = new StopManager();
     }
 
     public Stop getSelected() {
@@ -56,17 +89,21 @@ public class StopManager implements Iterable<Stop> {
      *
      * In this case, the correct name and location of the stop will be provided later
      *
+     * While a reload is in progress, a stop that has not been loaded yet is taken from the published snapshot.
+     *
      * @param id  the id of this stop
      *
      * @return  stop with given id
      */
     public Stop getStopWithId(int id) {
-        if (stopMap.containsKey(id)){
-            return stopMap.get(id);
+        Stop stop = stopTable.get(id);
+        if (stop == null && reloading){
+            stop = snapshot.get().getStop(id);
         }
-        Stop stop = new Stop(id, "", new LatLon(49.12345, -123.12345));
-        stopMap.put(id,stop);
-        return stop;
+        if (stop != null){
+            return stop;
+        }
+        return addStop(id, "", new LatLon(49.12345, -123.12345));
     }
 
     /**
@@ -77,12 +114,29 @@ public class StopManager implements Iterable<Stop> {
      * @return  stop with given id
      */
     public Stop getStopWithId(int id, String name, LatLon locn) {
-        if (stopMap.containsKey(id)){
-            return stopMap.get(id);
+        Stop stop = stopTable.get(id);
+        if (stop != null){
+            return stop;
+        }
+        return addStop(id, name, locn);
+    }
+
+    /**
+     * Create stop with given id, name and location and add it to the stop manager,
+     * unless another thread has added a stop with the same id first
+     *
+     * @return  stop with given id
+     */
+    private Stop addStop(int id, String name, LatLon locn) {
+        synchronized (writeLock) {
+            Stop stop = stopTable.get(id);
+            if (stop == null) {
+                stop = new Stop(id, name, locn);
+                stopTable.putIfAbsent(stop);
+                transitChanged();
+            }
+            return stop;
         }
-        Stop stop = new Stop(id,name,locn);
-        stopMap.put(id,stop);
-        return stop;
     }
 
     /**
@@ -92,10 +146,12 @@ public class StopManager implements Iterable<Stop> {
      * @throws StopException when stop manager doesn't contain selected stop
      */
     public void setSelected(Stop selected) throws StopException {
-        if(!stopMap.containsValue(selected)){
+        int number = selected.getNumber();
+        if(stopTable.get(number) != selected && snapshot.get().getStop(number) != selected){
             throw new StopException("No such stop: " + selected.getNumber() + " " + selected.getName());
-        }else{
+        }else if(this.selected != selected){
             this.selected=selected;
+            notifySelectionListeners();
         }
     }
 
@@ -103,7 +159,34 @@ public class StopManager implements Iterable<Stop> {
      * Clear selected stop (selected stop is null)
      */
     public void clearSelectedStop() {
-        selected=null;
+        if(selected != null){
+            selected=null;
+            notifySelectionListeners();
+        }
+    }
+
+    /**
+     * Register listener to be notified whenever the selected stop changes
+     *
+     * @param listener  the listener to add
+     */
+    public void addSelectedStopListener(SelectedStopListener listener) {
+        selectionListeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Stop notifying listener of changes to the selected stop
+     *
+     * @param listener  the listener to remove
+     */
+    public void removeSelectedStopListener(SelectedStopListener listener) {
+        selectionListeners.remove(listener);
+    }
+
+    private void notifySelectionListeners() {
+        for(SelectedStopListener listener : selectionListeners){
+            listener.onSelectedStopChanged(selected);
+        }
     }
 
     /**
@@ -112,14 +195,132 @@ public class StopManager implements Iterable<Stop> {
      * @return  number of stops added to manager
      */
     public int getNumStops() {
-        return stopMap.size();
+        return stopTable.size();
     }
 
     /**
      * Remove all stops from stop manager
      */
     public void clearStops() {
-        stopMap.clear();
+        synchronized (writeLock) {
+            stopTable=new StopTable();
+            transitChanged();
+        }
+    }
+
+    /**
+     * Get a snapshot of all stops and routes.  If the network has changed since the snapshot was published, and no
+     * update is in progress, a new snapshot is built and published first; otherwise this never blocks.
+     *
+     * @return  the current snapshot
+     */
+    public TransitSnapshot getSnapshot() {
+        TransitSnapshot current = snapshot.get();
+        if (current.getVersion() == version || updateDepth > 0) {
+            return current;
+        }
+        synchronized (writeLock) {
+            if (updateDepth == 0 && snapshot.get().getVersion() != version) {
+                publish();
+            }
+            return snapshot.get();
+        }
+    }
+
+    /**
+     * Start a batch of changes to stops and routes.  Until the matching endUpdate, changes are not published, and
+     * queries keep answering from the snapshot published before.  Calls may be nested; only the outermost
+     * endUpdate publishes.
+     */
+    public void beginUpdate() {
+        synchronized (writeLock) {
+            updateDepth++;
+        }
+    }
+
+    /**
+     * Finish a batch of changes started by beginUpdate.  If this ends the outermost batch and anything has
+     * changed, a snapshot of the live stops and routes is built and published.
+     */
+    public void endUpdate() {
+        boolean checkSelection;
+        synchronized (writeLock) {
+            if (updateDepth > 0) {
+                updateDepth--;
+            }
+            if (updateDepth > 0) {
+                return;
+            }
+            if (snapshot.get().getVersion() != version) {
+                publish();
+            }
+            checkSelection = reloaded;
+            reloaded = false;
+        }
+        Stop current = selected;
+        if (checkSelection && current != null && snapshot.get().getStop(current.getNumber()) != current) {
+            clearSelectedStop();
+        }
+    }
+
+    /**
+     * Start reloading all stops and routes.  The live stops and routes are cleared so that they can be parsed
+     * again, but the published snapshot is kept, and queries are answered from it, until endReload is called.
+     */
+    public void beginReload() {
+        synchronized (writeLock) {
+            updateDepth++;
+            reloading=true;
+            stopTable=new StopTable();
+            RouteManager.getInstance().clearRoutes();
+        }
+    }
+
+    /**
+     * Finish reloading all stops and routes: build a snapshot of the reloaded stops and routes and publish it in
+     * place of the old one.  If the selected stop is not part of the new snapshot, the selection is cleared.
+     * If the reload is part of a larger update, both happen at the end of that update instead.
+     */
+    public void endReload() {
+        synchronized (writeLock) {
+            reloading=false;
+            reloaded=true;
+        }
+        endUpdate();
+    }
+
+    /**
+     * Build a snapshot of the live stops and routes and publish it.  Must be called with writeLock held.
+     */
+    private void publish() {
+        snapshot.set(new TransitSnapshot(stopTable, RouteManager.getInstance(), version));
+    }
+
+    /**
+     * Record that a stop or route has been added, moved or removed.  The published snapshot is then out of date,
+     * and a new one is built when it is next asked for, or when the update in progress ends.
+     */
+    void transitChanged() {
+        synchronized (writeLock) {
+            version++;
+        }
+    }
+
+    /**
+     * Record that given stop has moved.  If the published snapshot was up to date before the move, and no update
+     * is in progress, a snapshot with just the stop moved is derived from it and published in its place.
+     *
+     * @param stop  the stop that has moved
+     */
+    void stopMoved(Stop stop) {
+        synchronized (writeLock) {
+            TransitSnapshot current = snapshot.get();
+            boolean upToDate = current.getVersion() == version;
+            version++;
+            if (upToDate && updateDepth == 0) {
+                snapshot.set(current.withStopMoved(stop, version));
+            }
+        }
     }
 
     /**
@@ -129,22 +330,46 @@ public class StopManager implements Iterable<Stop> {
      * @return    stop closest to pt but less than 10,000m away; null if no stop is within RADIUS metres of pt
      */
     public Stop findNearestTo(LatLon pt) {
-        Stop nearest = null;
-        double closestDistance = RADIUS;
-        for(Stop stop : stopMap.values()) {
-            double distance = SphericalGeometry.distanceBetween(stop.getLocn(), pt);
-            if(distance < closestDistance) {
-                nearest = stop;
-                closestDistance = distance;
-            }
-        }
-        return nearest;
+        return getSnapshot().findNearestTo(pt);
+    }
+
+    /**
+     * Find the k stops nearest to given point.  Stops RADIUS metres or more away from the point are not included.
+     *
+     * @param pt  point to which nearest stops are sought
+     * @param k   the maximum number of stops to find
+     * @return    up to k stops less than RADIUS metres from pt, closest first; empty if there are none
+     */
+    public List<Stop> findKNearest(LatLon pt, int k) {
+        return getSnapshot().findKNearest(pt, k);
+    }
+
+    /**
+     * Find all stops within given distance of given point.
+     *
+     * @param pt      point around which stops are sought
+     * @param metres  the greatest distance from pt, in metres, of stops to find
+     * @return        stops no more than metres away from pt, closest first; empty if there are none
+     */
+    public List<Stop> findWithin(LatLon pt, double metres) {
+        return getSnapshot().findWithin(pt, metres);
+    }
+
+    /**
+     * Find all stops inside or on the boundary of the rectangle formed by northWest and southEast
+     *
+     * @param northWest  the coordinate of the north west corner of the rectangle
+     * @param southEast  the coordinate of the south east corner of the rectangle
+     * @return           the stops in the rectangle, in no particular order
+     */
+    public List<Stop> stopsInRectangle(LatLon northWest, LatLon southEast) {
+        return getSnapshot().stopsInRectangle(northWest, southEast);
     }
 
     @Override
     public Iterator<Stop> iterator() {
         // Do not modify the implementation of this method!
-        return stopMap.values().iterator();
+        return stopTable.iterator();
     }
 
 }
\ No newline at end of file
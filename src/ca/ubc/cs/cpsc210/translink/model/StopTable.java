@@ -0,0 +1,173 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A table of stops keyed by stop number.
+ *
+ * Stops are held in a single open addressing array with linear probing.  The key of a slot is the number of
+ * the stop in it, so keys are neither boxed nor stored separately.  The slot of a stop is found by Fibonacci
+ * hashing of its number: stop numbers are dense (50001, 50002, ...), and multiplying by the golden ratio spreads
+ * consecutive numbers evenly over the array.  Taking the number modulo the size of the array would too, but only
+ * once the array is larger than the range of numbers; while it is smaller, stops added out of order pile up in
+ * long runs of occupied slots.
+ *
+ * Reads never block: get, size and iteration may run on any thread while a single writer adds stops.  Writers
+ * must be serialised by the caller.  A slot array is only ever filled in, never emptied, and a larger array is
+ * published as a whole through a volatile field, so a reader always probes a consistent array.
+ */
+class StopTable implements Iterable<Stop> {
+    private static final int INITIAL_CAPACITY = 16;     // must be a power of two
+    private static final double MAX_LOAD = 0.75;
+
+    private volatile AtomicReferenceArray<Stop> slots;
+    private volatile int size;
+
+    /**
+     * Constructs an empty table
+     */
+    StopTable() {
+        this(0);
+    }
+
+    /**
+     * Constructs an empty table that holds the given number of stops without growing.  A table filled from
+     * another should be sized for all its stops from the start: stops come out of a table grouped by the slots
+     * they hash to, and added in that order to a table that starts small and grows, they pile up in long runs
+     * of occupied slots.
+     *
+     * @param expectedSize  the number of stops the table is expected to hold
+     */
+    StopTable(int expectedSize) {
+        int capacity = INITIAL_CAPACITY;
+        while (expectedSize > capacity * MAX_LOAD) {
+            capacity *= 2;
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        size = 0;
+    }
+
+    /**
+     * Get stop with given number
+     *
+     * @param number  the number of the stop
+     * @return        the stop with given number; null if there is no such stop in the table
+     */
+    Stop get(int number) {
+        AtomicReferenceArray<Stop> slots = this.slots;
+        int mask = slots.length() - 1;
+        for (int i = slotOf(number, slots.length()); ; i = (i + 1) & mask) {
+            Stop stop = slots.get(i);
+            if (stop == null || stop.getNumber() == number) {
+                return stop;
+            }
+        }
+    }
+
+    /**
+     * Add stop to the table unless a stop with the same number is already there.
+     * Must not be called by more than one thread at a time.
+     *
+     * @param stop  the stop to add
+     * @return      the stop with the same number as stop that is now in the table
+     */
+    Stop putIfAbsent(Stop stop) {
+        if (size + 1 > slots.length() * MAX_LOAD) {
+            resize(slots.length() * 2);
+        }
+        AtomicReferenceArray<Stop> slots = this.slots;
+        int mask = slots.length() - 1;
+        int number = stop.getNumber();
+        for (int i = slotOf(number, slots.length()); ; i = (i + 1) & mask) {
+            Stop current = slots.get(i);
+            if (current == null) {
+                // an ordered store is enough to publish the stop to readers, as there is only one writer
+                slots.lazySet(i, stop);
+                size++;
+                return stop;
+            }
+            if (current.getNumber() == number) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Get number of stops in the table
+     *
+     * @return  number of stops in the table
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the slot at which to start looking for the stop with given number in an array of given capacity
+     */
+    private static int slotOf(int number, int capacity) {
+        return (number * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(capacity));
+    }
+
+    private void resize(int capacity) {
+        AtomicReferenceArray<Stop> old = slots;
+        AtomicReferenceArray<Stop> resized = new AtomicReferenceArray<>(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.length(); j++) {
+            Stop stop = old.get(j);
+            if (stop != null) {
+                int i = slotOf(stop.getNumber(), capacity);
+                while (resized.get(i) != null) {
+                    i = (i + 1) & mask;
+                }
+                // the array is published as a whole once it is filled
+                resized.lazySet(i, stop);
+            }
+        }
+        slots = resized;
+    }
+
+    /**
+     * Iterate over the stops in the table, in no particular order.  Stops added after the iterator is
+     * created may or may not be returned.
+     */
+    @Override
+    public Iterator<Stop> iterator() {
+        return new Iterator<Stop>() {
+            private final AtomicReferenceArray<Stop> snapshot = slots;
+            private int index = 0;
+            private Stop next = advance();
+
+            private Stop advance() {
+                while (index < snapshot.length()) {
+                    Stop stop = snapshot.get(index++);
+                    if (stop != null) {
+                        return stop;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Stop next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Stop stop = next;
+                next = advance();
+                return stop;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
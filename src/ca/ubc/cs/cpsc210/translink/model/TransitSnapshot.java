@@ -0,0 +1,487 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.CellId;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the transit network: the stops, routes and route patterns known at one moment,
+ * together with the indexes used to query them.
+ *
+ * A snapshot is built once and never changed afterwards, so it can be shared between threads and queried
+ * without locking.  Once the network has changed, the StopManager publishes a new snapshot when one is next asked
+ * for, and a query that is already running on an older snapshot carries on with it undisturbed.  The Stop, Route
+ * and RoutePattern objects themselves are shared with the managers and are not copied.
+ *
+ * Within a snapshot, stops are numbered 0 to getNumStops() - 1 in increasing order of their CellId, so that stops
+ * close together on the map are usually close together in the snapshot, and routes 0 to getNumRoutes() - 1 in order
+ * of route number.  Iterating over the stops follows the same order.  Stops in a rectangle are found by scanning
+ * the range of cell ids the rectangle covers, and the stops in a cell at any level of CellId form a single range of
+ * indexes (see getStopsInCell).  Which stops are on which routes can be queried through these indexes without
+ * allocating, for example to visit the routes at a stop:
+ *
+ *     for (int i = 0; i < snapshot.getNumRoutesAtStop(s); i++) {
+ *         Route route = snapshot.getRouteAt(snapshot.getRouteAtStop(s, i));
+ *     }
+ */
+public final class TransitSnapshot implements Iterable<Stop> {
+    static final TransitSnapshot EMPTY = new TransitSnapshot(Collections.<Stop>emptyList(),
+            Collections.<Route>emptyList(), 0);
+
+    private final long version;
+    private final StopTable stopTable;
+    private final StopGrid stopGrid;
+    private final Stop[] stopsByIndex;
+    private final long[] cellIds;
+    // stop numbers in increasing order, and the index of the stop with each number
+    private final int[] stopNumbers;
+    private final int[] stopIndexes;
+    private final Map<String, Route> routes;
+    private final Route[] routesByIndex;
+    private final String[] routeNumbers;
+    private final List<RoutePattern> patterns;
+    private final RouteStopIncidence incidence;
+
+    /**
+     * Build a snapshot of the given stops and routes
+     *
+     * @param stops    the stops in the network
+     * @param routes   the routes in the network
+     * @param version  the version of the network from which the snapshot is built
+     */
+    TransitSnapshot(Iterable<Stop> stops, Iterable<Route> routes, long version) {
+        this.version = version;
+        stopTable = new StopTable(sizeOf(stops));
+        for (Stop stop : stops) {
+            stopTable.putIfAbsent(stop);
+        }
+        int numStops = stopTable.size();
+        final Stop[] unsorted = new Stop[numStops];
+        final long[] unsortedCellIds = new long[numStops];
+        Integer[] order = new Integer[numStops];
+        int n = 0;
+        for (Stop stop : stopTable) {
+            unsorted[n] = stop;
+            unsortedCellIds[n] = CellId.fromLatLon(stop.getLocn());
+            order[n] = n;
+            n++;
+        }
+        // the cell id of each stop is computed once, not on every comparison
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                int byCell = Long.compare(unsortedCellIds[i1], unsortedCellIds[i2]);
+                return byCell != 0 ? byCell : Integer.compare(unsorted[i1].getNumber(), unsorted[i2].getNumber());
+            }
+        });
+        // stops are added to the grid in index order, so neighbouring stops are neighbours in the grid's columns too
+        stopsByIndex = new Stop[numStops];
+        stopGrid = new StopGrid();
+        cellIds = new long[numStops];
+        long[] numbered = new long[numStops];
+        for (int i = 0; i < numStops; i++) {
+            stopsByIndex[i] = unsorted[order[i]];
+            cellIds[i] = unsortedCellIds[order[i]];
+            stopGrid.add(stopsByIndex[i]);
+            numbered[i] = (long) stopsByIndex[i].getNumber() << 32 | i;
+        }
+        Arrays.sort(numbered);
+        stopNumbers = new int[numStops];
+        stopIndexes = new int[numStops];
+        for (int i = 0; i < numStops; i++) {
+            stopNumbers[i] = (int) (numbered[i] >>> 32);
+            stopIndexes[i] = (int) numbered[i];
+        }
+
+        Map<String, Route> routeMap = new HashMap<>();
+        for (Route route : routes) {
+            routeMap.put(route.getNumber(), route);
+        }
+        routeNumbers = routeMap.keySet().toArray(new String[routeMap.size()]);
+        Arrays.sort(routeNumbers);
+        routesByIndex = new Route[routeNumbers.length];
+        List<RoutePattern> patternList = new ArrayList<>();
+        for (int i = 0; i < routeNumbers.length; i++) {
+            routesByIndex[i] = routeMap.get(routeNumbers[i]);
+            patternList.addAll(routesByIndex[i].getPatterns());
+        }
+        this.routes = Collections.unmodifiableMap(routeMap);
+        this.patterns = Collections.unmodifiableList(patternList);
+        incidence = new RouteStopIncidence(this, routesByIndex);
+    }
+
+    /**
+     * Build a snapshot from given snapshot with the given stop order, spatial indexes and incidence in place of its
+     * own; the stops and routes are shared
+     */
+    private TransitSnapshot(TransitSnapshot from, Stop[] stopsByIndex, long[] cellIds, int[] stopIndexes,
+                            StopGrid stopGrid, RouteStopIncidence incidence, long version) {
+        this.version = version;
+        this.stopTable = from.stopTable;
+        this.stopGrid = stopGrid;
+        this.stopsByIndex = stopsByIndex;
+        this.cellIds = cellIds;
+        this.stopNumbers = from.stopNumbers;
+        this.stopIndexes = stopIndexes;
+        this.routes = from.routes;
+        this.routesByIndex = from.routesByIndex;
+        this.routeNumbers = from.routeNumbers;
+        this.patterns = from.patterns;
+        this.incidence = incidence;
+    }
+
+    /**
+     * Derive a snapshot from this one in which given stop is at its current location.  The stop is moved to the
+     * index its new cell id calls for and the stops in between shift by one, so this takes time linear in the
+     * number of stops and links, but no sorting or hashing, unlike building a snapshot anew.  If the stop is not
+     * in this snapshot, only the version differs.
+     *
+     * @param stop     the stop that has moved
+     * @param version  the version of the network after the move
+     * @return         the snapshot with the stop moved
+     */
+    TransitSnapshot withStopMoved(Stop stop, long version) {
+        int from = getStopIndex(stop);
+        if (from < 0) {
+            return new TransitSnapshot(this, stopsByIndex, cellIds, stopIndexes, stopGrid, incidence, version);
+        }
+        long cellId = CellId.fromLatLon(stop.getLocn());
+        // count the other stops ordered before the stop at its new location
+        int to = lowerBound(cellId, 0);
+        while (to < cellIds.length && cellIds[to] == cellId && stopsByIndex[to].getNumber() < stop.getNumber()) {
+            to++;
+        }
+        if (from < to) {
+            to--;
+        }
+        int numStops = stopsByIndex.length;
+        Stop[] movedStops = new Stop[numStops];
+        long[] movedCellIds = new long[numStops];
+        for (int i = 0; i < numStops; i++) {
+            int j = movedIndex(i, from, to);
+            movedStops[j] = stopsByIndex[i];
+            movedCellIds[j] = cellIds[i];
+        }
+        movedCellIds[to] = cellId;
+        int[] movedStopIndexes = new int[numStops];
+        StopGrid movedGrid = new StopGrid();
+        for (int i = 0; i < numStops; i++) {
+            movedStopIndexes[i] = movedIndex(stopIndexes[i], from, to);
+            movedGrid.add(movedStops[i]);
+        }
+        return new TransitSnapshot(this, movedStops, movedCellIds, movedStopIndexes, movedGrid,
+                new RouteStopIncidence(incidence, from, to), version);
+    }
+
+    /**
+     * Return the index that the stop at given index has after the stop at index from is moved to index to
+     */
+    static int movedIndex(int index, int from, int to) {
+        if (index == from) {
+            return to;
+        } else if (from < to && index > from && index <= to) {
+            return index - 1;
+        } else if (to < from && index >= to && index < from) {
+            return index + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Return the number of stops, if stops is a collection or a stop table; otherwise 0
+     */
+    private static int sizeOf(Iterable<Stop> stops) {
+        if (stops instanceof StopTable) {
+            return ((StopTable) stops).size();
+        } else if (stops instanceof Collection) {
+            return ((Collection<Stop>) stops).size();
+        }
+        return 0;
+    }
+
+    /**
+     * Get the version of the network from which this snapshot was built
+     *
+     * @return  the version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get stop with given id
+     *
+     * @param id  the id of the stop
+     * @return    the stop with given id; null if there is no such stop in this snapshot
+     */
+    public Stop getStop(int id) {
+        return stopTable.get(id);
+    }
+
+    /**
+     * Get number of stops in this snapshot
+     *
+     * @return  number of stops
+     */
+    public int getNumStops() {
+        return stopTable.size();
+    }
+
+    /**
+     * Get route with given number
+     *
+     * @param number  the number of the route
+     * @return        the route with given number; null if there is no such route in this snapshot
+     */
+    public Route getRoute(String number) {
+        return routes.get(number);
+    }
+
+    /**
+     * Get number of routes in this snapshot
+     *
+     * @return  number of routes
+     */
+    public int getNumRoutes() {
+        return routes.size();
+    }
+
+    /**
+     * Get all routes in this snapshot
+     *
+     * @return  the routes, in no particular order
+     */
+    public Iterable<Route> getRoutes() {
+        return routes.values();
+    }
+
+    /**
+     * Get all route patterns of all routes in this snapshot
+     *
+     * @return  the route patterns
+     */
+    public List<RoutePattern> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Get the index of given stop in this snapshot
+     *
+     * @param stop  the stop
+     * @return      the index of the stop; -1 if the stop is not in this snapshot
+     */
+    public int getStopIndex(Stop stop) {
+        int i = Arrays.binarySearch(stopNumbers, stop.getNumber());
+        return i >= 0 && stopsByIndex[stopIndexes[i]] == stop ? stopIndexes[i] : -1;
+    }
+
+    /**
+     * Get the cell id of the location of the stop with given index, as it was when this snapshot was built
+     *
+     * @param stopIndex  the index of the stop, from 0 to getNumStops() - 1
+     * @return           the cell id
+     */
+    public long getCellId(int stopIndex) {
+        return cellIds[stopIndex];
+    }
+
+    /**
+     * Get all stops located in the given cell
+     *
+     * @param cell   the id of the cell, as returned by CellId.parent
+     * @param level  the level of the cell
+     * @return       the stops in the cell, in index order
+     */
+    public List<Stop> getStopsInCell(long cell, int level) {
+        int first = lowerBound(CellId.rangeMin(cell, level), 0);
+        int end = lowerBound(CellId.rangeMax(cell, level) + 1, first);
+        return Collections.unmodifiableList(Arrays.asList(stopsByIndex).subList(first, end));
+    }
+
+    /**
+     * Get stop with given index
+     *
+     * @param stopIndex  the index of the stop, from 0 to getNumStops() - 1
+     * @return           the stop
+     */
+    public Stop getStopAt(int stopIndex) {
+        return stopsByIndex[stopIndex];
+    }
+
+    /**
+     * Get the index of given route in this snapshot
+     *
+     * @param route  the route
+     * @return       the index of the route; -1 if the route is not in this snapshot
+     */
+    public int getRouteIndex(Route route) {
+        int i = Arrays.binarySearch(routeNumbers, route.getNumber());
+        return i >= 0 && routesByIndex[i] == route ? i : -1;
+    }
+
+    /**
+     * Get route with given index
+     *
+     * @param routeIndex  the index of the route, from 0 to getNumRoutes() - 1
+     * @return            the route
+     */
+    public Route getRouteAt(int routeIndex) {
+        return routesByIndex[routeIndex];
+    }
+
+    /**
+     * Get number of routes with stops at given stop
+     *
+     * @param stopIndex  the index of the stop
+     * @return           number of routes at the stop
+     */
+    public int getNumRoutesAtStop(int stopIndex) {
+        return incidence.numRoutesAtStop(stopIndex);
+    }
+
+    /**
+     * Get the i-th route at given stop; routes at a stop are in increasing order of route index
+     *
+     * @param stopIndex  the index of the stop
+     * @param i          from 0 to getNumRoutesAtStop(stopIndex) - 1
+     * @return           the index of the route
+     */
+    public int getRouteAtStop(int stopIndex, int i) {
+        return incidence.routeAtStop(stopIndex, i);
+    }
+
+    /**
+     * Get number of stops on given route
+     *
+     * @param routeIndex  the index of the route
+     * @return            number of stops on the route
+     */
+    public int getNumStopsOnRoute(int routeIndex) {
+        return incidence.numStopsOnRoute(routeIndex);
+    }
+
+    /**
+     * Get the i-th stop on given route; stops on a route are in the order in which they were added to it
+     *
+     * @param routeIndex  the index of the route
+     * @param i           from 0 to getNumStopsOnRoute(routeIndex) - 1
+     * @return            the index of the stop
+     */
+    public int getStopOnRoute(int routeIndex, int i) {
+        return incidence.stopOnRoute(routeIndex, i);
+    }
+
+    /**
+     * Determine if given stop is on given route
+     *
+     * @param stopIndex   the index of the stop
+     * @param routeIndex  the index of the route
+     * @return            true if the stop is on the route
+     */
+    public boolean isStopOnRoute(int stopIndex, int routeIndex) {
+        return incidence.isStopOnRoute(stopIndex, routeIndex);
+    }
+
+    /**
+     * Find nearest stop to given point.  Returns null if no stop is closer than StopManager.RADIUS metres.
+     *
+     * @param pt  point to which nearest stop is sought
+     * @return    stop closest to pt but less than RADIUS metres away; null if there is no such stop
+     */
+    public Stop findNearestTo(LatLon pt) {
+        return stopGrid.findNearestTo(pt, StopManager.RADIUS);
+    }
+
+    /**
+     * Find the k stops nearest to given point that are less than StopManager.RADIUS metres away
+     *
+     * @param pt  point to which nearest stops are sought
+     * @param k   the maximum number of stops to find
+     * @return    up to k stops, closest first
+     */
+    public List<Stop> findKNearest(LatLon pt, int k) {
+        return stopGrid.findKNearest(pt, k, StopManager.RADIUS);
+    }
+
+    /**
+     * Find all stops within given distance of given point
+     *
+     * @param pt      point around which stops are sought
+     * @param metres  the greatest distance from pt, in metres, of stops to find
+     * @return        stops no more than metres away from pt, closest first
+     */
+    public List<Stop> findWithin(LatLon pt, double metres) {
+        return stopGrid.findWithin(pt, metres);
+    }
+
+    /**
+     * Find all stops inside or on the boundary of the rectangle formed by northWest and southEast
+     *
+     * @param northWest  the coordinate of the north west corner of the rectangle
+     * @param southEast  the coordinate of the south east corner of the rectangle
+     * @return           the stops in the rectangle, in index order
+     */
+    public List<Stop> stopsInRectangle(LatLon northWest, LatLon southEast) {
+        List<Stop> inside = new ArrayList<>();
+        double south = southEast.getLatitude();
+        double north = northWest.getLatitude();
+        double west = northWest.getLongitude();
+        double east = southEast.getLongitude();
+        if (south > north || west > east) {
+            return inside;
+        }
+        // scan the ids from the south west to the north east corner, jumping over runs of ids outside the rectangle
+        long min = CellId.fromLatLon(south, west);
+        long max = CellId.fromLatLon(north, east);
+        int i = lowerBound(min, 0);
+        int misses = 0;
+        while (i < cellIds.length && cellIds[i] <= max) {
+            if (CellId.inRectangle(cellIds[i], min, max)) {
+                LatLon locn = stopsByIndex[i].getLocn();
+                if (locn.getLatitude() >= south && locn.getLatitude() <= north
+                        && locn.getLongitude() >= west && locn.getLongitude() <= east) {
+                    inside.add(stopsByIndex[i]);
+                }
+                misses = 0;
+                i++;
+            } else if (++misses < 8) {
+                i++;
+            } else {
+                misses = 0;
+                i = lowerBound(CellId.nextInRectangle(cellIds[i], min, max), i + 1);
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Return the index of the first stop at or after index from whose cell id is not less than id
+     */
+    private int lowerBound(long id, int from) {
+        int i = Arrays.binarySearch(cellIds, from, cellIds.length, id);
+        if (i < 0) {
+            return -i - 1;
+        }
+        while (i > from && cellIds[i - 1] == id) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Iterate over the stops in this snapshot, in index order
+     */
+    @Override
+    public Iterator<Stop> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(stopsByIndex)).iterator();
+    }
+}
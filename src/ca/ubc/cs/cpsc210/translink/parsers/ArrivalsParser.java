@@ -4,6 +4,7 @@ import ca.ubc.cs.cpsc210.translink.model.Arrival;
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.RouteManager;
 import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.ArrivalsDataMissingException;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -29,15 +30,20 @@ public class ArrivalsParser {
     public static void parseArrivals(Stop stop, String jsonResponse)throws JSONException, ArrivalsDataMissingException {
         int count=0;
         JSONArray arrivals = new JSONArray(jsonResponse);
-        for (int index = 0; index < arrivals.length(); index++) {
-            JSONObject arrival = arrivals.getJSONObject(index);
-            parseArrival(stop,arrival);
-        }
-        for( Arrival a: stop){
-            count++;
-        }
-        if(count==0){
-            throw new  ArrivalsDataMissingException("Arrival is missing some elements!");
+        StopManager.getInstance().beginUpdate();
+        try {
+            for (int index = 0; index < arrivals.length(); index++) {
+                JSONObject arrival = arrivals.getJSONObject(index);
+                parseArrival(stop,arrival);
+            }
+            for( Arrival a: stop){
+                count++;
+            }
+            if(count==0){
+                throw new  ArrivalsDataMissingException("Arrival is missing some elements!");
+            }
+        } finally {
+            StopManager.getInstance().endUpdate();
         }
     }
 
@@ -0,0 +1,461 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A pull parser for JSON text, reading one token at a time from a Reader.
+ *
+ * Only the values asked for are turned into objects: names can be matched against a list of wanted names without
+ * creating a String, and values that are not wanted are skipped without creating anything, so a large document can
+ * be parsed in memory proportional to its deepest nesting rather than to its size.  Syntax errors are reported by
+ * throwing JSONException, as org.json does.
+ */
+class JsonStreamReader {
+    // kinds of token returned by peek
+    static final int BEGIN_ARRAY = 0;
+    static final int END_ARRAY = 1;
+    static final int BEGIN_OBJECT = 2;
+    static final int END_OBJECT = 3;
+    static final int NAME = 4;
+    static final int STRING = 5;
+    static final int NUMBER = 6;
+    static final int LITERAL = 7;           // true, false or null
+    static final int END_DOCUMENT = 8;
+
+    private static final int NONE = -1;
+    private static final int BUFFER_SIZE = 8192;
+
+    // what may come next in each open array or object
+    private static final int EMPTY_ARRAY = 0;
+    private static final int NONEMPTY_ARRAY = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int DANGLING_NAME = 3;
+    private static final int NONEMPTY_OBJECT = 4;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long offset = 0;                // characters read before buffer[0]
+
+    private int[] stack = new int[16];
+    private int depth = 0;
+    private int peeked = NONE;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Construct a reader of the JSON text read from in
+     *
+     * @param in  the source of the text
+     */
+    JsonStreamReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Return the kind of the next token, without consuming it
+     *
+     * @return  one of BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, LITERAL and END_DOCUMENT
+     * @throws IOException    when the text cannot be read
+     * @throws JSONException  when the text is not valid JSON
+     */
+    int peek() throws IOException, JSONException {
+        if (peeked == NONE) {
+            peeked = readToken();
+        }
+        return peeked;
+    }
+
+    /**
+     * Return true if the current array or object has another element, or the document another value
+     */
+    boolean hasNext() throws IOException, JSONException {
+        int token = peek();
+        return token != END_ARRAY && token != END_OBJECT && token != END_DOCUMENT;
+    }
+
+    /**
+     * Consume the opening or closing bracket of an array, or brace of an object
+     */
+    void beginArray() throws IOException, JSONException {
+        expect(BEGIN_ARRAY, "Expected '['");
+        push(EMPTY_ARRAY);
+    }
+
+    void endArray() throws IOException, JSONException {
+        expect(END_ARRAY, "Expected ']'");
+        depth--;
+    }
+
+    void beginObject() throws IOException, JSONException {
+        expect(BEGIN_OBJECT, "Expected '{'");
+        push(EMPTY_OBJECT);
+    }
+
+    void endObject() throws IOException, JSONException {
+        expect(END_OBJECT, "Expected '}'");
+        depth--;
+    }
+
+    /**
+     * Consume the next name in the current object and look it up in names, without creating a String for it
+     *
+     * @param names  the names wanted
+     * @return       the index of the name in names; -1 if it is not one of them
+     */
+    int nextName(String[] names) throws IOException, JSONException {
+        expect(NAME, "Expected a name");
+        readString();
+        for (int i = 0; i < names.length; i++) {
+            if (textEquals(names[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Consume the next value, which must be a string, a number or a literal, and return its text.  The text of a
+     * string is unescaped; that of a number or literal is as it appears in the JSON text.
+     *
+     * @return  the text of the value
+     * @throws JSONException  when the next token is not a value of one of these kinds
+     */
+    String nextScalar() throws IOException, JSONException {
+        int token = peek();
+        peeked = NONE;
+        if (token == STRING) {
+            readString();
+        } else if (token == NUMBER || token == LITERAL) {
+            readUnquoted();
+        } else {
+            throw syntaxError("Expected a string, number or literal");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Consume the next value, including any arrays and objects nested in it, without creating anything for it
+     */
+    void skipValue() throws IOException, JSONException {
+        int count = 0;
+        do {
+            int token = peek();
+            peeked = NONE;
+            switch (token) {
+                case BEGIN_ARRAY:
+                    push(EMPTY_ARRAY);
+                    count++;
+                    break;
+                case BEGIN_OBJECT:
+                    push(EMPTY_OBJECT);
+                    count++;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    if (count == 0) {
+                        throw syntaxError("Expected a value");
+                    }
+                    depth--;
+                    count--;
+                    break;
+                case NAME:
+                case STRING:
+                    skipString();
+                    break;
+                case NUMBER:
+                case LITERAL:
+                    readUnquoted();
+                    break;
+                default:
+                    throw syntaxError("Expected a value");
+            }
+        } while (count > 0);
+    }
+
+    private void expect(int token, String message) throws IOException, JSONException {
+        if (peek() != token) {
+            throw syntaxError(message);
+        }
+        peeked = NONE;
+    }
+
+    private void push(int state) {
+        if (depth == stack.length) {
+            int[] grown = new int[depth * 2];
+            System.arraycopy(stack, 0, grown, 0, depth);
+            stack = grown;
+        }
+        stack[depth++] = state;
+    }
+
+    /**
+     * Read up to the first character of the next token, checking the separators before it, and return its kind.
+     * Strings, numbers and literals are left to be read by readString or readUnquoted.
+     */
+    private int readToken() throws IOException, JSONException {
+        int state = depth == 0 ? NONE : stack[depth - 1];
+        int c = nextNonWhitespace();
+        if (state == EMPTY_ARRAY || state == NONEMPTY_ARRAY) {
+            if (c == ']') {
+                return END_ARRAY;
+            }
+            if (state == NONEMPTY_ARRAY) {
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                c = nextNonWhitespace();
+            }
+            stack[depth - 1] = NONEMPTY_ARRAY;
+        } else if (state == EMPTY_OBJECT || state == NONEMPTY_OBJECT) {
+            if (c == '}') {
+                return END_OBJECT;
+            }
+            if (state == NONEMPTY_OBJECT) {
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or '}'");
+                }
+                c = nextNonWhitespace();
+            }
+            if (c != '"') {
+                throw syntaxError("Expected a name");
+            }
+            stack[depth - 1] = DANGLING_NAME;
+            return NAME;
+        } else if (state == DANGLING_NAME) {
+            if (c != ':') {
+                throw syntaxError("Expected ':' after a name");
+            }
+            c = nextNonWhitespace();
+            stack[depth - 1] = NONEMPTY_OBJECT;
+        } else if (c == -1) {
+            return END_DOCUMENT;
+        }
+
+        switch (c) {
+            case '[':
+                return BEGIN_ARRAY;
+            case '{':
+                return BEGIN_OBJECT;
+            case '"':
+                return STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                pos--;
+                return LITERAL;
+            case -1:
+                throw syntaxError("Unexpected end of text");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    pos--;
+                    return NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Read the rest of a string whose opening quote has been consumed into text, unescaping it
+     */
+    private void readString() throws IOException, JSONException {
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buffer[pos];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                pos++;
+            }
+            text.append(buffer, start, pos - start);
+            if (pos == limit) {
+                if (!fill()) {
+                    throw syntaxError("Unterminated string");
+                }
+                continue;
+            }
+            if (buffer[pos++] == '"') {
+                return;
+            }
+            text.append(readEscape());
+        }
+    }
+
+    /**
+     * Skip the rest of a string whose opening quote has been consumed
+     */
+    private void skipString() throws IOException, JSONException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            char c = buffer[pos++];
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                readEscape();
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, JSONException {
+        int c = read();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'f':
+                return '\f';
+            case 'r':
+                return '\r';
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Illegal escape");
+                    }
+                    value = value * 16 + digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Illegal escape");
+        }
+    }
+
+    /**
+     * Read a number or literal into text, checking that it is a well formed JSON number, true, false or null
+     */
+    private void readUnquoted() throws IOException, JSONException {
+        text.setLength(0);
+        while (true) {
+            if (pos == limit && !fill()) {
+                break;
+            }
+            char c = buffer[pos];
+            if (!isUnquoted(c)) {
+                break;
+            }
+            text.append(c);
+            pos++;
+        }
+        if (!isNumber(text) && !textEquals("true") && !textEquals("false") && !textEquals("null")) {
+            throw syntaxError("Illegal value '" + text + "'");
+        }
+    }
+
+    private static boolean isUnquoted(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                || c == '-' || c == '+' || c == '.';
+    }
+
+    /**
+     * Return true if s is a number as JSON defines it
+     */
+    private static boolean isNumber(CharSequence s) {
+        int i = 0;
+        int n = s.length();
+        if (i < n && s.charAt(i) == '-') {
+            i++;
+        }
+        int digits = i;
+        while (i < n && Character.isDigit(s.charAt(i))) {
+            i++;
+        }
+        if (i == digits || (s.charAt(digits) == '0' && i > digits + 1)) {
+            return false;
+        }
+        if (i < n && s.charAt(i) == '.') {
+            i++;
+            int fraction = i;
+            while (i < n && Character.isDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i == fraction) {
+                return false;
+            }
+        }
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            int exponent = i;
+            while (i < n && Character.isDigit(s.charAt(i))) {
+                i++;
+            }
+            if (i == exponent) {
+                return false;
+            }
+        }
+        return i == n;
+    }
+
+    private boolean textEquals(String s) {
+        int n = s.length();
+        if (text.length() != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (text.charAt(i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        while (true) {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[pos++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buffer[pos++];
+    }
+
+    /**
+     * Refill the buffer, which must have been consumed; return false at the end of the text
+     */
+    private boolean fill() throws IOException {
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (offset + pos));
+    }
+}
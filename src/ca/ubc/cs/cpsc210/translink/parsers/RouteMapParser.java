@@ -3,23 +3,45 @@ package ca.ubc.cs.cpsc210.translink.parsers;
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.RouteManager;
 import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
 import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
-import ca.ubc.cs.cpsc210.translink.util.LatLon;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Parser for routes stored in a compact format in a txt file
+ *
+ * Each line holds one route pattern: N, the route number, a dash and the pattern name, followed by the latitude and
+ * longitude of each point on the path, all separated by semicolons.  The file is scanned as raw bytes: coordinates
+ * are decoded straight from their digits into millionths of a degree, so no String or other object is created for
+ * a point, only the route number and pattern name and one packed array of coordinates per pattern.
+ *
+ * Every path is decoded as the file is parsed.  Paths are only decoded lazily, when first read, if they are loaded
+ * from a compiled snapshot (see SnapshotLoader), where they stay in the memory-mapped file until then.
+ *
+ * Lines are independent, so they can also be parsed in parallel (see parseInParallel): the data is split into
+ * chunks at line boundaries, each chunk is parsed on its own thread with its own scratch space, and the patterns
+ * are then stored in the routes on the calling thread in the order in which they appear in the file, so that the
+ * result is exactly that of parsing sequentially.
  */
 public class  RouteMapParser {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int MICRODEGREE_DIGITS = 6;
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000, 100000, 1000000};
+
+    private static final int CHUNKS_PER_THREAD = 4;
+
     private String fileName;
-    private String routeNumber;
-    private String patternName;
-    private List<LatLon> latLons=new ArrayList<>();
 
     public RouteMapParser(String fileName) {
         this.fileName = fileName;
@@ -31,46 +53,275 @@ public class  RouteMapParser {
     public void parse(){
         DataProvider dataProvider = new FileDataProvider(fileName);
         try {
-            String c = dataProvider.dataSourceToString();
-            if (!c.equals("")) {
-                int posn = 0;
-                while (posn < c.length()) {
-                    int endposn = c.indexOf('\n', posn);
-                    String line = c.substring(posn, endposn);
-                    parseOnePattern(line);
+            parseRouteMaps(dataProvider.dataSourceToBytes());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parse the route map txt file, parsing parts of it in parallel on all available processors
+     */
+    public void parseInParallel(){
+        DataProvider dataProvider = new FileDataProvider(fileName);
+        try {
+            parseRouteMapsInParallel(dataProvider.dataSourceToBytes(), Runtime.getRuntime().availableProcessors());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Parse the route patterns in the contents of a route map txt file, adding each to the route named within it
+     *
+     * @param data  the contents of the file
+     */
+    public void parseRouteMaps(byte[] data) {
+        StopManager.getInstance().beginUpdate();
+        try {
+            PatternScanner scanner = new PatternScanner();
+            int posn = 0;
+            while (posn < data.length) {
+                int endposn = indexOf(data, (byte) '\n', posn, data.length);
+                ParsedPattern pattern = scanner.parseOnePattern(data, posn, endposn);
+                if (pattern != null) {
+                    storeRouteMap(pattern.routeNumber, pattern.patternName, pattern.latLons);
+                }
+                posn = endposn + 1;
+            }
+        } finally {
+            StopManager.getInstance().endUpdate();
+        }
+    }
+
+    /**
+     * Parse the route patterns in the contents of a route map txt file using the given number of threads, adding
+     * each to the route named within it.  Patterns are added in the order in which they appear, and if a line
+     * cannot be parsed, the patterns before it have been added when the exception is thrown, just as when parsing
+     * sequentially.
+     *
+     * @param data     the contents of the file
+     * @param threads  the number of threads on which to parse
+     */
+    public void parseRouteMapsInParallel(byte[] data, int threads) {
+        parseRouteMapsInParallel(data, threads, threads * CHUNKS_PER_THREAD);
+    }
+
+    /**
+     * Parse the route patterns in the contents of a route map txt file as parseRouteMapsInParallel(data, threads)
+     * does, splitting the data into the given number of chunks; fewer if there are fewer lines than chunks
+     *
+     * @param data     the contents of the file
+     * @param threads  the number of threads on which to parse
+     * @param chunks   the number of chunks into which to split the data
+     */
+    void parseRouteMapsInParallel(byte[] data, int threads, int chunks) {
+        chunks = Math.max(1, chunks);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<ChunkResult>> results = new ArrayList<>(chunks);
+            int start = 0;
+            for (int i = 1; i <= chunks && start < data.length; i++) {
+                // each chunk ends just after the first newline at or after its share of the data
+                int end = Math.max(start, (int) ((long) data.length * i / chunks));
+                end = Math.min(indexOf(data, (byte) '\n', end, data.length) + 1, data.length);
+                results.add(executor.submit(new ChunkParser(data, start, end)));
+                start = end;
+            }
+            StopManager.getInstance().beginUpdate();
+            try {
+                for (Future<ChunkResult> result : results) {
+                    ChunkResult chunk = getChunk(result);
+                    for (ParsedPattern pattern : chunk.patterns) {
+                        storeRouteMap(pattern.routeNumber, pattern.patternName, pattern.latLons);
+                    }
+                    if (chunk.failure != null) {
+                        throw chunk.failure;
+                    }
+                }
+            } finally {
+                StopManager.getInstance().endUpdate();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ChunkResult getChunk(Future<ChunkResult> result) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return result.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // a ChunkParser catches runtime exceptions, so only errors get here
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A route pattern parsed from one line, not yet stored in its route
+     */
+    private static class ParsedPattern {
+        final String routeNumber;
+        final String patternName;
+        final int[] latLons;
+
+        ParsedPattern(String routeNumber, String patternName, int[] latLons) {
+            this.routeNumber = routeNumber;
+            this.patternName = patternName;
+            this.latLons = latLons;
+        }
+    }
+
+    /**
+     * The patterns parsed from a chunk of lines, up to the first line that could not be parsed, if any
+     */
+    private static class ChunkResult {
+        final List<ParsedPattern> patterns = new ArrayList<>();
+        RuntimeException failure;
+    }
+
+    /**
+     * Parses the lines in data[start..end), which must begin at the start of a line and end at the end of one
+     */
+    private static class ChunkParser implements Callable<ChunkResult> {
+        private final byte[] data;
+        private final int start;
+        private final int end;
+
+        ChunkParser(byte[] data, int start, int end) {
+            this.data = data;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public ChunkResult call() {
+            ChunkResult result = new ChunkResult();
+            PatternScanner scanner = new PatternScanner();
+            int posn = start;
+            try {
+                while (posn < end) {
+                    int endposn = indexOf(data, (byte) '\n', posn, end);
+                    ParsedPattern pattern = scanner.parseOnePattern(data, posn, endposn);
+                    if (pattern != null) {
+                        result.patterns.add(pattern);
+                    }
                     posn = endposn + 1;
                 }
+            } catch (RuntimeException e) {
+                result.failure = e;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            return result;
+        }
+    }
+
+    /**
+     * Parses route patterns one line at a time, reusing its scratch space from one pattern to the next; each thread
+     * parsing lines needs its own
+     */
+    private static class PatternScanner {
+        // coordinates of the pattern being parsed
+        private int[] latLons = new int[256];
+
+        /**
+         * Parse one route pattern from the line data[start..end).  Blank lines and lines without a dash in the
+         * route number and pattern name are skipped.
+         *
+         * @return  the pattern; null if the line was skipped
+         */
+        ParsedPattern parseOnePattern(byte[] data, int start, int end) {
+            while (end > start && (data[end - 1] == '\r' || data[end - 1] == ';')) {
+                end--;
+            }
+            int headerEnd = indexOf(data, (byte) ';', start, end);
+            int dashPoint = indexOf(data, (byte) '-', start + 1, headerEnd);
+            if (dashPoint >= headerEnd) {
+                return null;
+            }
+            String routeNumber = new String(data, start + 1, dashPoint - start - 1, ASCII);
+            String patternName = new String(data, dashPoint + 1, headerEnd - dashPoint - 1, ASCII);
+
+            int count = 0;
+            int posn = headerEnd + 1;
+            while (posn < end) {
+                int next = indexOf(data, (byte) ';', posn, end);
+                if (count == latLons.length) {
+                    latLons = Arrays.copyOf(latLons, count * 2);
+                }
+                latLons[count++] = parseMicrodegrees(data, posn, next);
+                posn = next + 1;
+            }
+            // a latitude without a longitude is ignored; each pattern gets its own packed array of coordinates
+            return new ParsedPattern(routeNumber, patternName, Arrays.copyOf(latLons, count / 2 * 2));
         }
     }
 
     /**
-     * Parse one route pattern, adding it to the route that is named within it
-     * @param str
+     * Decode the decimal number of degrees in data[start..end) into millionths of a degree, as
+     * RoutePattern.toMicrodegrees(Double.parseDouble(...)) would.  Numbers with at most six decimal places are
+     * decoded exactly from their digits; anything else is handed to Double.parseDouble.
      */
-    private void parseOnePattern(String str){
-        if(str==null){
-            latLons= Collections.emptyList();
+    private static int parseMicrodegrees(byte[] data, int start, int end) {
+        int i = start;
+        boolean negative = i < end && data[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < end; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9' && digits < 12) {
+                value = value * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return parseMicrodegreesSlowly(data, start, end);
+            }
+        }
+        if (digits == 0 || decimals > MICRODEGREE_DIGITS) {
+            return parseMicrodegreesSlowly(data, start, end);
         }
-        String[] parts = str.split(";");
-        String part2=parts[0];
-        Integer dashPoint=part2.indexOf("-",1);
-
-        String routeNumber = parts[0].substring(1,dashPoint);
-        String patternName = parts[0].substring(dashPoint+1);
-
-        double lat;
-        double lon;
-        for(int i=1;i<parts.length-1;i=i+2){
-            lat=Double.parseDouble(parts[i]);
-            lon=Double.parseDouble(parts[i+1]);
-            LatLon newL=new LatLon(lat,lon);
-            latLons.add(newL);
+        value *= POWERS_OF_TEN[MICRODEGREE_DIGITS - Math.max(decimals, 0)];
+        if (value > Integer.MAX_VALUE) {
+            return parseMicrodegreesSlowly(data, start, end);
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private static int parseMicrodegreesSlowly(byte[] data, int start, int end) {
+        return RoutePattern.toMicrodegrees(Double.parseDouble(new String(data, start, end - start, ASCII)));
+    }
+
+    /**
+     * Return the index of the first b in data[from..to); to if there is none
+     */
+    private static int indexOf(byte[] data, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
         }
-        storeRouteMap(routeNumber,patternName,latLons);
-        System.out.println(routeNumber+" "+patternName+" "+latLons.size());
+        return to;
     }
 
     /**
@@ -80,11 +331,11 @@ public class  RouteMapParser {
      *
      * @param routeNumber       the number of the route
      * @param patternName       the name of the pattern
-     * @param elements          the coordinate list of the pattern
+     * @param elements          the coordinates of the pattern, packed as by RoutePattern.setPath(int[])
      */
-    private void storeRouteMap(String routeNumber, String patternName, List<LatLon> elements) {
+    private void storeRouteMap(String routeNumber, String patternName, int[] elements) {
         Route r = RouteManager.getInstance().getRouteWithNumber(routeNumber);
         RoutePattern rp = r.getPattern(patternName);
         rp.setPath(elements);
     }
-}
\ No newline at end of file
+}
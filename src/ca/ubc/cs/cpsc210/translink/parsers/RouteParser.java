@@ -3,6 +3,7 @@ package ca.ubc.cs.cpsc210.translink.parsers;
 import ca.ubc.cs.cpsc210.translink.model.Route;
 import ca.ubc.cs.cpsc210.translink.model.RouteManager;
 import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
 import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
 import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
@@ -48,36 +49,41 @@ public class RouteParser {
     public void parseRoutes(String jsonResponse) throws JSONException, RouteDataMissingException {
         JSONArray jsonArray = new JSONArray(jsonResponse);
 
-        // Parse Routes
-        for (int m = 0; m < jsonArray.length(); m++) {
-            JSONObject jsonObject = jsonArray.getJSONObject(m);
-            // Check Route elements.
-            if (!(jsonObject.has("Name") && jsonObject.has("RouteNo") && jsonObject.has("Patterns"))) {
-                throw new RouteDataMissingException("Route is missing some elements.");
-            }
-            // Retrieve Route info.
-            String lineName = jsonObject.getString("Name");
-            String lineId = jsonObject.getString("RouteNo");
-            // Stores all routes found in the RouteManager.
-            Route r = RouteManager.getInstance().getRouteWithNumber(lineId, lineName);
+        StopManager.getInstance().beginUpdate();
+        try {
+            // Parse Routes
+            for (int m = 0; m < jsonArray.length(); m++) {
+                JSONObject jsonObject = jsonArray.getJSONObject(m);
+                // Check Route elements.
+                if (!(jsonObject.has("Name") && jsonObject.has("RouteNo") && jsonObject.has("Patterns"))) {
+                    throw new RouteDataMissingException("Route is missing some elements.");
+                }
+                // Retrieve Route info.
+                String lineName = jsonObject.getString("Name");
+                String lineId = jsonObject.getString("RouteNo");
+                // Stores all routes found in the RouteManager.
+                Route r = RouteManager.getInstance().getRouteWithNumber(lineId, lineName);
 
-            // Parse RoutePattern
-            JSONArray jsonSequences = jsonObject.getJSONArray("Patterns");
-            for (int i = 0; i < jsonSequences.length(); i++) {
-                JSONObject sequence = jsonSequences.getJSONObject(i);
-                // Check RoutePattern elements.
-                if (!(sequence.has("Destination") && sequence.has("Direction") && sequence.has("PatternNo"))) {
-                    throw new RouteDataMissingException("RoutePattern is missing some elements.");
+                // Parse RoutePattern
+                JSONArray jsonSequences = jsonObject.getJSONArray("Patterns");
+                for (int i = 0; i < jsonSequences.length(); i++) {
+                    JSONObject sequence = jsonSequences.getJSONObject(i);
+                    // Check RoutePattern elements.
+                    if (!(sequence.has("Destination") && sequence.has("Direction") && sequence.has("PatternNo"))) {
+                        throw new RouteDataMissingException("RoutePattern is missing some elements.");
+                    }
+                    // Retrieve RoutePattern info.
+                    String destination = sequence.getString("Destination");
+                    String direction = sequence.getString("Direction");
+                    String name = sequence.getString("PatternNo");
+                    // Stores all route patterns of this route that is found in the RouteManager.
+                    RoutePattern rp = r.getPattern(name, destination, direction);
+                    rp.setDestination(destination);
+                    rp.setDirection(direction);
                 }
-                // Retrieve RoutePattern info.
-                String destination = sequence.getString("Destination");
-                String direction = sequence.getString("Direction");
-                String name = sequence.getString("PatternNo");
-                // Stores all route patterns of this route that is found in the RouteManager.
-                RoutePattern rp = r.getPattern(name, destination, direction);
-                rp.setDestination(destination);
-                rp.setDirection(direction);
             }
+        } finally {
+            StopManager.getInstance().endUpdate();
         }
     }
 }
\ No newline at end of file
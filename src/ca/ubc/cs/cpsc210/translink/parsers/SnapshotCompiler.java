@@ -0,0 +1,290 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.model.TransitSnapshot;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.RouteDataMissingException;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
+import ca.ubc.cs.cpsc210.translink.providers.AbstractFileDataProvider;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.json.JSONException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the stop, route and route map files into a transit snapshot file, to be loaded by SnapshotLoader
+ * without parsing.  This runs offline, on a desktop JVM, whenever the data files change:
+ *
+ *   java ca.ubc.cs.cpsc210.translink.parsers.SnapshotCompiler res/raw transit.bin
+ *
+ * The format of the file is described in SnapshotLoader.
+ */
+public class SnapshotCompiler {
+
+    /**
+     * Compile the data files in the directory named by the first argument into the file named by the second
+     */
+    public static void main(String[] args)
+            throws IOException, JSONException, StopDataMissingException, RouteDataMissingException {
+        if (args.length != 2) {
+            System.err.println("usage: SnapshotCompiler <raw resource directory> <snapshot file>");
+            System.exit(2);
+        }
+        compile(new File(args[0]), new File(args[1]));
+    }
+
+    /**
+     * Parse stops.json, allroutes.json and allroutemapstxt.txt in the given directory, replacing the stops and
+     * routes in the StopManager and RouteManager, and write them to a snapshot file
+     *
+     * @param rawDirectory  the directory holding the data files
+     * @param snapshotFile  the snapshot file to write
+     */
+    public static void compile(File rawDirectory, File snapshotFile)
+            throws IOException, JSONException, StopDataMissingException, RouteDataMissingException {
+        StopManager.getInstance().beginReload();
+        try {
+            InputStream stops = new FileInputStream(new File(rawDirectory, "stops.json"));
+            try {
+                new StopParser(null).parseStops(new InputStreamReader(stops, "UTF-8"));
+            } finally {
+                stops.close();
+            }
+            byte[] routes = AbstractFileDataProvider.readSourceRaw(
+                    new FileInputStream(new File(rawDirectory, "allroutes.json")));
+            new RouteParser(null).parseRoutes(new String(routes, SnapshotLoader.UTF8));
+            new RouteMapParser(null).parseRouteMaps(AbstractFileDataProvider.readSourceRaw(
+                    new FileInputStream(new File(rawDirectory, "allroutemapstxt.txt"))));
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(snapshotFile));
+        try {
+            write(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write the stops and routes now in the StopManager and RouteManager as a snapshot.  Stops are written in the
+     * order of the current TransitSnapshot and routes in order of route number, so the same data always gives
+     * the same file.
+     *
+     * @param out  the stream to which to write
+     */
+    public static void write(OutputStream out) throws IOException {
+        TransitSnapshot snapshot = StopManager.getInstance().getSnapshot();
+        List<Route> routes = new ArrayList<>();
+        for (Route route : RouteManager.getInstance()) {
+            routes.add(route);
+        }
+        Collections.sort(routes, new Comparator<Route>() {
+            @Override
+            public int compare(Route r1, Route r2) {
+                return r1.getNumber().compareTo(r2.getNumber());
+            }
+        });
+
+        StringTable strings = new StringTable();
+        int numStops = snapshot.getNumStops();
+        double[] lats = new double[numStops];
+        double[] lons = new double[numStops];
+        int[] stopNumbers = new int[numStops];
+        int[] stopNames = new int[numStops];
+        for (int i = 0; i < numStops; i++) {
+            Stop stop = snapshot.getStopAt(i);
+            lats[i] = stop.getLocn().getLatitude();
+            lons[i] = stop.getLocn().getLongitude();
+            stopNumbers[i] = stop.getNumber();
+            stopNames[i] = strings.indexOf(stop.getName());
+        }
+
+        int numRoutes = routes.size();
+        int[] routeNumbers = new int[numRoutes];
+        int[] routeNames = new int[numRoutes];
+        int[] routePatterns = new int[numRoutes + 1];
+        int[] routeStopOffsets = new int[numRoutes + 1];
+        IntList patternNames = new IntList();
+        IntList patternDestinations = new IntList();
+        IntList patternDirections = new IntList();
+        IntList pathOffsets = new IntList();
+        IntList routeStops = new IntList();
+        List<int[]> paths = new ArrayList<>();
+        int numPathInts = 0;
+        for (int r = 0; r < numRoutes; r++) {
+            Route route = routes.get(r);
+            routeNumbers[r] = strings.indexOf(route.getNumber());
+            routeNames[r] = route.getName() == null ? -1 : strings.indexOf(route.getName());
+            routePatterns[r] = patternNames.size();
+            routeStopOffsets[r] = routeStops.size();
+            for (RoutePattern pattern : route.getPatterns()) {
+                patternNames.add(strings.indexOf(pattern.getName()));
+                patternDestinations.add(strings.indexOf(pattern.getDestination()));
+                patternDirections.add(strings.indexOf(pattern.getDirection()));
+                pathOffsets.add(numPathInts);
+                int[] path = packedPath(pattern);
+                paths.add(path);
+                numPathInts += path.length;
+            }
+            for (Stop stop : route.getStops()) {
+                int index = snapshot.getStopIndex(stop);
+                if (index < 0) {
+                    throw new IOException("Stop " + stop.getNumber() + " on route " + route.getNumber()
+                            + " is not in the stop manager");
+                }
+                routeStops.add(index);
+            }
+        }
+        routePatterns[numRoutes] = patternNames.size();
+        routeStopOffsets[numRoutes] = routeStops.size();
+        pathOffsets.add(numPathInts);
+
+        byte[] utf8 = strings.toBytes();
+        int numStrings = strings.size();
+        long length = 4L * SnapshotLoader.HEADER_INTS + 4L * (numStrings + 1) + utf8.length
+                + SnapshotLoader.padding(4 * (numStrings + 1) + utf8.length)
+                + 16L * numStops + 8L * numStops + 16L * numRoutes + 8 + 16L * patternNames.size() + 4
+                + 4L * routeStops.size() + 4L * numPathInts;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Too much data for a transit snapshot");
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(SnapshotLoader.MAGIC);
+        data.writeInt(SnapshotLoader.FORMAT_VERSION);
+        data.writeInt((int) length);
+        data.writeInt(numStrings);
+        data.writeInt(utf8.length);
+        data.writeInt(numStops);
+        data.writeInt(numRoutes);
+        data.writeInt(patternNames.size());
+        data.writeInt(routeStops.size());
+        data.writeInt(numPathInts);
+
+        writeInts(data, strings.offsets());
+        data.write(utf8);
+        data.write(new byte[SnapshotLoader.padding(4 * (numStrings + 1) + utf8.length)]);
+        for (double lat : lats) {
+            data.writeDouble(lat);
+        }
+        for (double lon : lons) {
+            data.writeDouble(lon);
+        }
+        writeInts(data, stopNumbers);
+        writeInts(data, stopNames);
+        writeInts(data, routeNumbers);
+        writeInts(data, routeNames);
+        writeInts(data, routePatterns);
+        writeInts(data, routeStopOffsets);
+        writeInts(data, patternNames.toArray());
+        writeInts(data, patternDestinations.toArray());
+        writeInts(data, patternDirections.toArray());
+        writeInts(data, pathOffsets.toArray());
+        writeInts(data, routeStops.toArray());
+        for (int[] path : paths) {
+            writeInts(data, path);
+        }
+        data.flush();
+        if (data.size() != length) {
+            throw new IllegalStateException("Wrote " + data.size() + " bytes, expected " + length);
+        }
+    }
+
+    /**
+     * Return the path of the pattern packed as by RoutePattern.setPath(int[])
+     */
+    private static int[] packedPath(RoutePattern pattern) {
+        List<LatLon> points = pattern.getPath();
+        int[] path = new int[2 * points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            path[2 * i] = RoutePattern.toMicrodegrees(points.get(i).getLatitude());
+            path[2 * i + 1] = RoutePattern.toMicrodegrees(points.get(i).getLongitude());
+        }
+        return path;
+    }
+
+    private static void writeInts(DataOutputStream data, int[] values) throws IOException {
+        for (int value : values) {
+            data.writeInt(value);
+        }
+    }
+
+    /**
+     * Strings numbered in the order in which they are first seen, each stored once
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final ByteArrayOutputStream utf8 = new ByteArrayOutputStream();
+        private final IntList offsets = new IntList();
+
+        int indexOf(String s) {
+            Integer index = indexes.get(s);
+            if (index == null) {
+                index = indexes.size();
+                indexes.put(s, index);
+                offsets.add(utf8.size());
+                byte[] bytes = s.getBytes(SnapshotLoader.UTF8);
+                utf8.write(bytes, 0, bytes.length);
+            }
+            return index;
+        }
+
+        int size() {
+            return indexes.size();
+        }
+
+        int[] offsets() {
+            int[] all = Arrays.copyOf(offsets.toArray(), size() + 1);
+            all[size()] = utf8.size();
+            return all;
+        }
+
+        byte[] toBytes() {
+            return utf8.toByteArray();
+        }
+    }
+
+    /**
+     * A growable array of ints
+     */
+    private static class IntList {
+        private int[] values = new int[64];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.model.PathSource;
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads stops, routes and route patterns from a transit snapshot file written by SnapshotCompiler, replacing those
+ * in the StopManager and RouteManager with the same stops, routes and patterns that parsing the original JSON and
+ * text files would give.  Every table is read and checked before anything is replaced, so a corrupt file leaves
+ * the managers as they were, and the new stops and routes are published to queries all at once (see
+ * StopManager.beginReload).
+ *
+ * The file is memory-mapped and its columns are read with bulk copies, so loading takes no parsing at all: stops,
+ * routes and patterns are created straight from the tables.  The paths, which make up most of the file, are not
+ * read at all: each pattern is given a PathSource for its part of the mapped file, and its packed path is copied
+ * out the first time it is read, so only the paths in use are held on the heap.
+ *
+ * A snapshot file holds, in big-endian order:
+ *   a header of HEADER_INTS ints: MAGIC, FORMAT_VERSION, the length of the file in bytes and the number of
+ *     strings, bytes of string data, stops, routes, patterns, route stops and path coordinates;
+ *   the string table: the offset of each string in the string data, one more offset for the end of the data,
+ *     and the data itself in UTF-8, padded so that the stop columns start at a multiple of 8 bytes;
+ *   the stop columns: latitudes and longitudes as doubles, then numbers and name strings;
+ *   the route table: number and name strings (-1 for no name), the index of each route's first pattern and of
+ *     its first stop, each with one more entry for the end;
+ *   the pattern table: name, destination and direction strings, and the index of each pattern's first path
+ *     coordinate, with one more entry for the end;
+ *   the stops of each route, as stop indexes, in the order in which they were added to the route;
+ *   the paths of all patterns, packed as by RoutePattern.setPath(int[]).
+ */
+public class SnapshotLoader {
+    static final int MAGIC = 0x54534e50;            // "TSNP"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_INTS = 10;
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Load a snapshot file, replacing all stops and routes
+     *
+     * @param file  the snapshot file
+     * @throws IOException  when the file cannot be read or is not a snapshot file of this format version; the
+     *                      stops and routes are then left unchanged
+     */
+    public static void load(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Load a snapshot from the contents of a snapshot file, starting at the buffer's position, replacing all stops
+     * and routes
+     *
+     * @param data  the contents of the file
+     * @throws IOException  when the contents are not a snapshot of this format version; the stops and routes are
+     *                      then left unchanged
+     */
+    public static void load(ByteBuffer data) throws IOException {
+        ByteBuffer in = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not a transit snapshot");
+            }
+            int version = in.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported transit snapshot format version " + version);
+            }
+            if (in.getInt() > data.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            int numStrings = in.getInt();
+            int stringBytes = in.getInt();
+            int numStops = in.getInt();
+            int numRoutes = in.getInt();
+            int numPatterns = in.getInt();
+            int numRouteStops = in.getInt();
+            int numPathInts = in.getInt();
+
+            String[] strings = readStrings(in, numStrings, stringBytes);
+            double[] lats = readDoubles(in, numStops);
+            double[] lons = readDoubles(in, numStops);
+            int[] stopNumbers = readInts(in, numStops);
+            int[] stopNames = readInts(in, numStops);
+            int[] routeNumbers = readInts(in, numRoutes);
+            int[] routeNames = readInts(in, numRoutes);
+            int[] routePatterns = readInts(in, numRoutes + 1);
+            int[] routeStopOffsets = readInts(in, numRoutes + 1);
+            int[] patternNames = readInts(in, numPatterns);
+            int[] patternDestinations = readInts(in, numPatterns);
+            int[] patternDirections = readInts(in, numPatterns);
+            int[] pathOffsets = readInts(in, numPatterns + 1);
+            int[] routeStops = readInts(in, numRouteStops);
+            IntBuffer paths = in.asIntBuffer();
+            if (paths.remaining() < numPathInts) {
+                throw new BufferUnderflowException();
+            }
+
+            // check every index and offset before anything is replaced
+            checkIndexes(stopNames, 0, numStrings, "stop names");
+            checkIndexes(routeNumbers, 0, numStrings, "route numbers");
+            checkIndexes(routeNames, -1, numStrings, "route names");
+            checkOffsets(routePatterns, numPatterns, "route patterns");
+            checkOffsets(routeStopOffsets, numRouteStops, "route stops");
+            checkIndexes(patternNames, 0, numStrings, "pattern names");
+            checkIndexes(patternDestinations, 0, numStrings, "pattern destinations");
+            checkIndexes(patternDirections, 0, numStrings, "pattern directions");
+            checkOffsets(pathOffsets, numPathInts, "paths");
+            for (int p = 0; p < numPatterns; p++) {
+                if ((pathOffsets[p + 1] - pathOffsets[p]) % 2 != 0) {
+                    throw new IOException("Corrupt paths in transit snapshot");
+                }
+            }
+            checkIndexes(routeStops, 0, numStops, "stops of routes");
+
+            StopManager stopManager = StopManager.getInstance();
+            stopManager.beginReload();
+            try {
+                Stop[] stops = new Stop[numStops];
+                for (int i = 0; i < numStops; i++) {
+                    stops[i] = stopManager.getStopWithId(stopNumbers[i], strings[stopNames[i]],
+                            new LatLon(lats[i], lons[i]));
+                }
+
+                RouteManager routeManager = RouteManager.getInstance();
+                for (int r = 0; r < numRoutes; r++) {
+                    String name = routeNames[r] < 0 ? null : strings[routeNames[r]];
+                    Route route = routeManager.getRouteWithNumber(strings[routeNumbers[r]], name);
+                    for (int p = routePatterns[r]; p < routePatterns[r + 1]; p++) {
+                        RoutePattern pattern = route.getPattern(strings[patternNames[p]],
+                                strings[patternDestinations[p]], strings[patternDirections[p]]);
+                        pattern.setPath(new MappedPath(paths, pathOffsets[p], pathOffsets[p + 1]));
+                    }
+                    List<Stop> onRoute = new ArrayList<>(routeStopOffsets[r + 1] - routeStopOffsets[r]);
+                    for (int i = routeStopOffsets[r]; i < routeStopOffsets[r + 1]; i++) {
+                        onRoute.add(stops[routeStops[i]]);
+                    }
+                    route.linkStops(onRoute);
+                }
+            } finally {
+                stopManager.endReload();
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt transit snapshot", e);
+        }
+    }
+
+    /**
+     * Check that every value is at least min and less than limit
+     */
+    private static void checkIndexes(int[] values, int min, int limit, String what) throws IOException {
+        for (int value : values) {
+            if (value < min || value >= limit) {
+                throw new IOException("Corrupt " + what + " in transit snapshot");
+            }
+        }
+    }
+
+    /**
+     * Check that offsets start at 0 or more, never decrease, and end at limit or less
+     */
+    private static void checkOffsets(int[] offsets, int limit, String what) throws IOException {
+        int previous = 0;
+        for (int offset : offsets) {
+            if (offset < previous || offset > limit) {
+                throw new IOException("Corrupt " + what + " in transit snapshot");
+            }
+            previous = offset;
+        }
+    }
+
+    /**
+     * The path of a pattern as the ints in paths[start..end) of a snapshot
+     */
+    private static class MappedPath implements PathSource {
+        private final IntBuffer paths;
+        private final int start;
+        private final int end;
+
+        MappedPath(IntBuffer paths, int start, int end) {
+            this.paths = paths;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int getNumPoints() {
+            return (end - start) / 2;
+        }
+
+        @Override
+        public int[] decodePath() {
+            // a duplicate has its own position, so paths may be decoded on several threads at once
+            IntBuffer in = paths.duplicate();
+            in.position(start);
+            int[] path = new int[end - start];
+            in.get(path);
+            return path;
+        }
+    }
+
+    /**
+     * Read the string table.  Here and in readInts and readDoubles, counts are checked against the bytes left
+     * before anything is allocated, so that a corrupt count cannot exhaust memory.
+     */
+    private static String[] readStrings(ByteBuffer in, int numStrings, int stringBytes) {
+        int[] offsets = readInts(in, numStrings + 1);
+        if (stringBytes > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] utf8 = new byte[stringBytes];
+        in.get(utf8);
+        in.position(in.position() + padding(4 * (numStrings + 1) + stringBytes));
+        String[] strings = new String[numStrings];
+        for (int i = 0; i < numStrings; i++) {
+            strings[i] = new String(utf8, offsets[i], offsets[i + 1] - offsets[i], UTF8);
+        }
+        return strings;
+    }
+
+    private static int[] readInts(ByteBuffer in, int count) {
+        if (count > in.remaining() / 4) {
+            throw new BufferUnderflowException();
+        }
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    private static double[] readDoubles(ByteBuffer in, int count) {
+        if (count > in.remaining() / 8) {
+            throw new BufferUnderflowException();
+        }
+        double[] values = new double[count];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + 8 * count);
+        return values;
+    }
+
+    /**
+     * Return the number of bytes of padding after a section of the given number of bytes that brings it to a
+     * multiple of 8
+     */
+    static int padding(int bytes) {
+        return (8 - bytes % 8) % 8;
+    }
+}
@@ -5,17 +5,32 @@ import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
 import ca.ubc.cs.cpsc210.translink.providers.DataProvider;
 import ca.ubc.cs.cpsc210.translink.providers.FileDataProvider;
 import ca.ubc.cs.cpsc210.translink.util.LatLon;
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A parser for the data returned by Translink stops query
  */
 public class StopParser{
 
+    // Fields of a stop that are parsed; all others are skipped
+    private static final String[] FIELDS = {"Name", "StopNo", "Routes", "Latitude", "Longitude"};
+    private static final int NAME = 0;
+    private static final int STOP_NO = 1;
+    private static final int ROUTES = 2;
+    private static final int LATITUDE = 3;
+    private static final int LONGITUDE = 4;
+
     private String filename;
 
     public StopParser(String filename) {
@@ -23,12 +38,18 @@ public class StopParser{
     }
     /**
      * Parse stop data from the file and add all stops to stop manager.
+     * The file is parsed as it is read, one stop at a time.
      *
      */
     public void parse() throws IOException, StopDataMissingException, JSONException{
         DataProvider dataProvider = new FileDataProvider(filename);
 
-        parseStops(dataProvider.dataSourceToString());
+        InputStream in = dataProvider.dataSourceToStream();
+        try {
+            parseStops(new InputStreamReader(in, "UTF-8"));
+        } finally {
+            in.close();
+        }
     }
 
     /**
@@ -44,35 +65,153 @@ public class StopParser{
      */
 
     public void parseStops(String jsonResponse)throws JSONException, StopDataMissingException {
-        JSONArray jsonArray = new JSONArray(jsonResponse);
-
-        // Parse Stops.
-        for (int i = 0; i < jsonArray.length(); i++) {
-            JSONObject jsonObject = jsonArray.getJSONObject(i);
-            // Check Stop elements.
-            if(!(jsonObject.has("Name") && jsonObject.has("StopNo") && jsonObject.has("Routes") && jsonObject.has("Latitude") && jsonObject.has("Longitude"))){
-                throw new StopDataMissingException("Stop is missing some elements.");
+        try {
+            parseStops(new StringReader(jsonResponse));
+        } catch (IOException e) {
+            // a StringReader does not throw IOException
+            throw new JSONException(e.getMessage());
+        }
+    }
+
+    /**
+     * Parse stop information from JSON produced by Translink as it is read, storing each stop in the StopManager
+     * as soon as it has been parsed; fields other than those of a Stop are skipped without being stored.
+     * If an exception is thrown, the stops before the one at fault have been stored and linked to their routes.
+     *
+     * @param  json    reader of JSON data to be parsed
+     * @throws IOException when the data cannot be read
+     * @throws JSONException when
+     *     JSON data does not have expected format
+     *     JSON data is not an array
+     * @throws StopDataMissingException when
+     *     JSON data is missing Name, StopNo, Routes or location (Latitude or Longitude) elements for any stop
+     */
+    public void parseStops(Reader json) throws IOException, JSONException, StopDataMissingException {
+        JsonStreamReader reader = new JsonStreamReader(json);
+        if (reader.peek() != JsonStreamReader.BEGIN_ARRAY) {
+            throw new JSONException("A JSONArray text must start with '['");
+        }
+        reader.beginArray();
+        StopManager.getInstance().beginUpdate();
+        try {
+            // Stops found on each route, in the order in which they were parsed
+            Map<Route, List<Stop>> routeStops = new LinkedHashMap<>();
+            // Kind of token and text of each field of the stop being parsed; kind is -1 for a missing field
+            int[] kinds = new int[FIELDS.length];
+            String[] values = new String[FIELDS.length];
+
+            try {
+                // Parse Stops.
+                for (int i = 0; reader.hasNext(); i++) {
+                    if (reader.peek() != JsonStreamReader.BEGIN_OBJECT) {
+                        throw new JSONException("JSONArray[" + i + "] is not a JSONObject.");
+                    }
+                    readFields(reader, kinds, values);
+                    // Check Stop elements.
+                    for (int kind : kinds) {
+                        if (kind < 0) {
+                            throw new StopDataMissingException("Stop is missing some elements.");
+                        }
+                    }
+                    // Retrieve Stop info.
+                    String stopName = getString(kinds, values, NAME);
+                    int stopNumber = getInt(kinds, values, STOP_NO);
+                    double lat = getDouble(kinds, values, LATITUDE);
+                    double lon = getDouble(kinds, values, LONGITUDE);
+                    LatLon lalLon = new LatLon(lat,lon);
+
+                    // Stores all stops found in the StopManager.
+                    Stop stop = StopManager.getInstance().getStopWithId(stopNumber,stopName,lalLon);
+
+                    // Retrieve Route info.
+                    String routesStr = getString(kinds, values, ROUTES);
+                    String[] routeString = routesStr.split(",");
+                    for(int j=0;j<routeString.length;j++) {
+                        Route route = RouteManager.getInstance().getRouteWithNumber(routeString[j].trim());
+                        List<Stop> stops = routeStops.get(route);
+                        if(stops == null){
+                            stops = new ArrayList<>();
+                            routeStops.put(route, stops);
+                        }
+                        stops.add(stop);
+                    }
+                }
+                reader.endArray();
+            } finally {
+                // Link each route to the stops parsed so far in one pass
+                for(Map.Entry<Route, List<Stop>> entry : routeStops.entrySet()) {
+                    entry.getKey().linkStops(entry.getValue());
+                }
             }
-            // Retrieve Stop info.
-            String stopName = jsonObject.getString("Name");
-            int stopNumber = jsonObject.getInt("StopNo");
-            double lat = jsonObject.getDouble("Latitude");
-            double lon = jsonObject.getDouble("Longitude");
-            LatLon lalLon = new LatLon(lat,lon);
-
-            // Stores all stops found in the StopManager.
-            Stop stop = StopManager.getInstance().getStopWithId(stopNumber,stopName,lalLon);
-
-            // Retrieve Route info.
-            String routesStr = jsonObject.getString("Routes");
-            String[] routeString = routesStr.split(",");
-            for(int j=0;j<routeString.length;j++) {
-                Route route = RouteManager.getInstance().getRouteWithNumber(routeString[j].trim());
-                if(!route.getStops().contains(stop)){
-                    route.addStop(stop);
-                    stop.addRoute(route);
+        } finally {
+            StopManager.getInstance().endUpdate();
+        }
+    }
+
+    /**
+     * Read the next object, keeping the kind of token and text of each of FIELDS and skipping all other fields
+     */
+    private static void readFields(JsonStreamReader reader, int[] kinds, String[] values)
+            throws IOException, JSONException {
+        Arrays.fill(kinds, -1);
+        Arrays.fill(values, null);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            int field = reader.nextName(FIELDS);
+            if (field < 0) {
+                reader.skipValue();
+                continue;
+            }
+            if (kinds[field] >= 0) {
+                throw new JSONException("Duplicate key \"" + FIELDS[field] + "\"");
+            }
+            kinds[field] = reader.peek();
+            if (kinds[field] == JsonStreamReader.BEGIN_ARRAY || kinds[field] == JsonStreamReader.BEGIN_OBJECT) {
+                reader.skipValue();
+            } else {
+                values[field] = reader.nextScalar();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static String getString(int[] kinds, String[] values, int field) throws JSONException {
+        if (kinds[field] != JsonStreamReader.STRING) {
+            throw new JSONException("JSONObject[\"" + FIELDS[field] + "\"] not a string.");
+        }
+        return values[field];
+    }
+
+    private static int getInt(int[] kinds, String[] values, int field) throws JSONException {
+        try {
+            if (kinds[field] == JsonStreamReader.NUMBER) {
+                String value = values[field];
+                if (value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0) {
+                    try {
+                        return (int) Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        // too large for a long; converted through double below
+                    }
                 }
+                return (int) Double.parseDouble(value);
+            }
+            if (kinds[field] == JsonStreamReader.STRING) {
+                return Integer.parseInt(values[field]);
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new JSONException("JSONObject[\"" + FIELDS[field] + "\"] is not an int.");
+    }
+
+    private static double getDouble(int[] kinds, String[] values, int field) throws JSONException {
+        try {
+            if (kinds[field] == JsonStreamReader.NUMBER || kinds[field] == JsonStreamReader.STRING) {
+                return Double.parseDouble(values[field]);
             }
+        } catch (NumberFormatException e) {
+            // reported below
         }
+        throw new JSONException("JSONObject[\"" + FIELDS[field] + "\"] is not a number.");
     }
 }
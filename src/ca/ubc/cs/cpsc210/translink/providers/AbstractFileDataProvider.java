@@ -1,6 +1,7 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * Common functionality for file data providers
@@ -29,25 +30,28 @@ public abstract class AbstractFileDataProvider implements DataProvider {
         return sb.toString();
     }
 
-    public static byte[] readSourceRaw(InputStream is) {
+    /**
+     * Read source data from input stream as bytes, reading until the end of the stream however many reads it takes
+     *
+     * @param is  input stream connected to source data
+     * @return  source data as bytes
+     * @throws IOException  when error occurs reading data from file
+     */
+    public static byte[] readSourceRaw(InputStream is) throws IOException {
         try {
-            final int maxlen = 4 * 1024 * 1024;
-
-            byte[] bytes = new byte[maxlen];
-            int nread = is.read(bytes, 0, maxlen);
-            assert nread <= maxlen;
-            byte[] xbytes = new byte[1];
-            int xnread = is.read(xbytes, 0, 1);
-            assert xnread == 0;
-            byte[] ans = new byte[nread];
-            System.arraycopy(bytes, 0, ans, 0, nread);
-            return ans;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            byte[] bytes = new byte[Math.max(is.available(), 64 * 1024) + 1];
+            int length = 0;
+            int nread;
+            while ((nread = is.read(bytes, length, bytes.length - length)) != -1) {
+                length += nread;
+                if (length == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                }
+            }
+            return Arrays.copyOf(bytes, length);
+        } finally {
+            is.close();
         }
-        return null;
     }
 
 }
@@ -1,6 +1,8 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
@@ -48,6 +50,14 @@ public abstract class AbstractHttpDataProvider implements DataProvider {
         return jsonResults.toString();
     }
 
+    /**
+     * Responses are small, so they are read in full and the stream is served from memory
+     */
+    @Override
+    public InputStream dataSourceToStream() throws IOException {
+        return new ByteArrayInputStream(dataSourceToString().getBytes("UTF-8"));
+    }
+
     private StringBuilder readResponse() throws IOException {
         StringBuilder jsonResults = new StringBuilder();
         InputStreamReader in = new InputStreamReader(conn.getInputStream());
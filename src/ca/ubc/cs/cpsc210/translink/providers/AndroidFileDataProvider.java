@@ -27,6 +27,13 @@ public class AndroidFileDataProvider extends AbstractFileDataProvider {
         return readSource(is);
     }
 
+    @Override
+    public InputStream dataSourceToStream() throws IOException {
+        Resources resources = cxt.getResources();
+        return resources.openRawResource(
+                resources.getIdentifier("raw/" + fileName, "raw", cxt.getPackageName()));
+    }
+
     @Override
     public byte[] dataSourceToBytes() throws IOException {
         Resources resources = cxt.getResources();
@@ -1,6 +1,7 @@
 package ca.ubc.cs.cpsc210.translink.providers;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * Specifies behaviours for data providers
@@ -21,4 +22,11 @@ public interface DataProvider {
      * @throws IOException  when error occurs reading from source
      */
     byte[] dataSourceToBytes() throws IOException;
+    /**
+     * Open data source as a stream, so that it can be parsed as it is read; the caller must close the stream
+     *
+     * @return  stream from which data is read
+     * @throws IOException  when error occurs opening source
+     */
+    InputStream dataSourceToStream() throws IOException;
 }
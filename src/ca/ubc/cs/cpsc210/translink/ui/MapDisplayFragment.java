@@ -93,8 +93,14 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         nearestStopMarker = null;
         busRouteOverlays = new ArrayList<>();
         newStopClusterer();
-        parseStops();
-        parseRouteMapText();
+        // the stops and routes are published to queries once, when both files have been parsed
+        StopManager.getInstance().beginReload();
+        try {
+            parseStops();
+            parseRouteMapText();
+        } finally {
+            StopManager.getInstance().endReload();
+        }
     }
 
     /**
@@ -276,11 +282,14 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
      *
      */
     private void parseRouteMapText() {
-        new RouteMapParser("allroutemapstxt").parse();
+        new RouteMapParser("allroutemapstxt").parseInParallel();
     }
 
     /**
-     * Plot each visible segment of each route pattern of each route going through the selected stop.
+     * Plot each visible segment of each route pattern of each route going through the selected stop.  When zoomed
+     * in, the visible runs of each pattern are found from the segment index and plotted at full detail; otherwise
+     * each pattern is plotted at the level of detail that can be seen at the current zoom level.  Either way,
+     * lines are clipped to the visible area.
      *
      */
     private void plotRoutes() {
@@ -289,38 +298,61 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         Stop s = StopManager.getInstance().getSelected();
         busRouteLegendOverlay.clear();
 
-        //parseStops();
-        //parseRouteMapText();
-
-
-        /*List<Route> routes = new ArrayList<>();
-        for(Route route: busRouteOverlays ){
-            s.addRoute(route);
-            routes.add(route);
-        }
-        createBusRouteLegendOverlay();
-        if(s!=null){
-            for (Route route: s.getRoutes()) {
-                for (RoutePattern routePattern: route.getPatterns()) {
-                    List<GeoPoint> geoPoints = new ArrayList<>();
-                    for(LatLon point: routePattern.getPath()){
-                        Geometry g = new Geometry();
-
-                        if(g.rectangleContainsPoint(northWest,southEast,point)){
-                            geoPoints.add(new GeoPoint(point.getLatitude(),point.getLongitude()));
-                        }
+        if (s != null) {
+            int zoom = mapView.getZoomLevel();
+            Map<Route, Integer> colours = new HashMap<>();
+            for (Route route : s.getRoutes()) {
+                colours.put(route, busRouteLegendOverlay.add(route.getNumber()));
+            }
+            if (zoom > 14) {
+                List<RoutePattern> patterns = new ArrayList<>();
+                for (Route route : colours.keySet()) {
+                    patterns.addAll(route.getPatterns());
+                }
+                for (PathRun run : RouteManager.getInstance().pathRunsInRectangle(northWest, southEast, patterns)) {
+                    plotVisiblePath(run.getPath(), colours.get(run.getPattern().getRoute()), zoom);
+                }
+            } else {
+                for (Map.Entry<Route, Integer> entry : colours.entrySet()) {
+                    for (RoutePattern routePattern : entry.getKey().getPatterns()) {
+                        plotVisiblePath(routePattern.getPath(zoom), entry.getValue(), zoom);
                     }
-                    Polyline polyline = new Polyline(mapView.getContext());
-                    polyline.setPoints(geoPoints);
-                    polyline.setColor(busRouteLegendOverlay.getColor(route.getNumber()));
-                    polyline.setWidth(getLineWidth(zoomLevel));
-                    busRouteOverlays.add(polyline);
-                    createBusRouteLegendOverlay();
-                    //updateOverlays();
                 }
             }
-            updateOverlays();
-        }*/
+        }
+        updateOverlays();
+    }
+
+    /**
+     * Add a line through each visible part of the path through the given points to the bus route overlays
+     */
+    private void plotVisiblePath(List<LatLon> path, int colour, int zoom) {
+        int count = path.size();
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            LatLon point = path.get(i);
+            lats[i] = point.getLatitude();
+            lons[i] = point.getLongitude();
+        }
+        for (List<LatLon> part : Geometry.clipPath(northWest, southEast, lats, lons, count)) {
+            plotPath(part, colour, zoom);
+        }
+    }
+
+    /**
+     * Add a line through the given points to the bus route overlays
+     */
+    private void plotPath(List<LatLon> path, int colour, int zoom) {
+        List<GeoPoint> geoPoints = new ArrayList<>(path.size());
+        for (LatLon point : path) {
+            geoPoints.add(new GeoPoint(point.getLatitude(), point.getLongitude()));
+        }
+        Polyline polyline = new Polyline(mapView.getContext());
+        polyline.setPoints(geoPoints);
+        polyline.setColor(colour);
+        polyline.setWidth(getLineWidth(zoom));
+        busRouteOverlays.add(polyline);
     }
 
     /**
@@ -347,23 +379,20 @@ public class MapDisplayFragment extends Fragment implements MapEventsReceiver, I
         newStopClusterer();
         updateOverlays();
 
-        Geometry g = new Geometry();
-        for (Stop stop: StopManager.getInstance()) {
-            if(g.rectangleContainsPoint(northWest,southEast,stop.getLocn())){
-                Marker marker = new Marker(mapView);
-                marker.setPosition(new GeoPoint(stop.getLocn().getLatitude(),stop.getLocn().getLongitude()));
-                marker.setIcon(stopIconDrawable);
-                marker.setTitle(Integer.toString(stop.getNumber())+"-"+stop.getName());
-                marker.setInfoWindow(stopInfoWindow);
-
-                marker.setRelatedObject(stop);
-                setMarker(stop,marker);
-                stopMarkerMap.put(stop,marker);
-                stopClusterer.add(marker);
-                updateMarkerOfNearest(stop);
-                updateOverlays();
-            }
+        for (Stop stop: StopManager.getInstance().stopsInRectangle(northWest,southEast)) {
+            Marker marker = new Marker(mapView);
+            marker.setPosition(new GeoPoint(stop.getLocn().getLatitude(),stop.getLocn().getLongitude()));
+            marker.setIcon(stopIconDrawable);
+            marker.setTitle(Integer.toString(stop.getNumber())+"-"+stop.getName());
+            marker.setInfoWindow(stopInfoWindow);
+
+            marker.setRelatedObject(stop);
+            setMarker(stop,marker);
+            stopMarkerMap.put(stop,marker);
+            stopClusterer.add(marker);
+            updateMarkerOfNearest(stop);
         }
+        updateOverlays();
     }
 
     /**
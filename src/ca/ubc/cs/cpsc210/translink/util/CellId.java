@@ -0,0 +1,181 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * Encode locations as cell ids: 62-bit keys that order locations along a Z-order (Morton) curve.
+ *
+ * Latitude and longitude are each scaled to a 31-bit integer (a step of less than 1cm), and the bits of the two
+ * are interleaved, longitude in the even bits and latitude in the odd bits.  Locations that are close together
+ * usually have close ids, and every id starting with the same 2 * level bits lies in the same cell of a grid that
+ * divides the world into 2^level by 2^level cells.  So sorting by id groups nearby locations together, all ids in a
+ * cell form one contiguous range, and the id of the cell at a coarser level (see parent) can serve as a compact key
+ * for a region, e.g. for sharding or caching.
+ *
+ * Ids are never negative, so they can be compared and sorted as ordinary longs.
+ */
+public class CellId {
+    public static final int MAX_LEVEL = 31;
+    private static final double STEPS = 1L << MAX_LEVEL;
+    private static final long LON_BITS = 0x5555555555555555L;      // even bits
+    private static final long LAT_BITS = 0xAAAAAAAAAAAAAAAAL;      // odd bits
+
+    /**
+     * Return the id of the given location at the finest level
+     * @param lat   the latitude in degrees
+     * @param lon   the longitude in degrees
+     * @return      the cell id
+     */
+    public static long fromLatLon(double lat, double lon) {
+        return interleave(scale(lat, 90.0)) << 1 | interleave(scale(lon, 180.0));
+    }
+
+    /**
+     * Return the id of the given location at the finest level
+     * @param locn  the location
+     * @return      the cell id
+     */
+    public static long fromLatLon(LatLon locn) {
+        return fromLatLon(locn.getLatitude(), locn.getLongitude());
+    }
+
+    /**
+     * Return the id of the cell at the given level containing the cell with the given id
+     * @param id    a cell id at the finest level
+     * @param level the level of the parent cell, from 0 (the whole world) to MAX_LEVEL
+     * @return      the id of the parent cell, from 0 to 4^level - 1
+     */
+    public static long parent(long id, int level) {
+        return id >>> (2 * (MAX_LEVEL - level));
+    }
+
+    /**
+     * Return the smallest id at the finest level in the given cell
+     * @param cell  the id of the cell
+     * @param level the level of the cell
+     * @return      the first id in the cell
+     */
+    public static long rangeMin(long cell, int level) {
+        return cell << (2 * (MAX_LEVEL - level));
+    }
+
+    /**
+     * Return the largest id at the finest level in the given cell
+     * @param cell  the id of the cell
+     * @param level the level of the cell
+     * @return      the last id in the cell
+     */
+    public static long rangeMax(long cell, int level) {
+        return rangeMin(cell + 1, level) - 1;
+    }
+
+    /**
+     * Return the latitude of the south west corner of the cell with the given id at the finest level
+     * @param id    the cell id
+     * @return      the latitude in degrees
+     */
+    public static double latitudeOf(long id) {
+        return compact(id >>> 1) / STEPS * 180.0 - 90.0;
+    }
+
+    /**
+     * Return the longitude of the south west corner of the cell with the given id at the finest level
+     * @param id    the cell id
+     * @return      the longitude in degrees
+     */
+    public static double longitudeOf(long id) {
+        return compact(id) / STEPS * 360.0 - 180.0;
+    }
+
+    /**
+     * Return true if the cell with the given id lies in the rectangle of cells whose south west and north east
+     * corners have ids min and max
+     * @param id    the cell id
+     * @param min   the id of the south west corner of the rectangle
+     * @param max   the id of the north east corner of the rectangle
+     * @return      true if the cell is in the rectangle
+     */
+    public static boolean inRectangle(long id, long min, long max) {
+        long lat = id & LAT_BITS;
+        long lon = id & LON_BITS;
+        return lat >= (min & LAT_BITS) && lat <= (max & LAT_BITS) && lon >= (min & LON_BITS) && lon <= (max & LON_BITS);
+    }
+
+    /**
+     * Return the smallest id greater than the given id that lies in the rectangle of cells whose south west and
+     * north east corners have ids min and max (the BIGMIN of Tropf and Herzog).  A scan along the curve uses this to
+     * jump over the ids that lie outside the rectangle.
+     * @param id    the cell id, between min and max but outside the rectangle
+     * @param min   the id of the south west corner of the rectangle
+     * @param max   the id of the north east corner of the rectangle
+     * @return      the next id in the rectangle; greater than max if there is none
+     */
+    public static long nextInRectangle(long id, long min, long max) {
+        long next = max + 1;
+        for (int bit = 2 * MAX_LEVEL - 1; bit >= 0; bit--) {
+            long mask = 1L << bit;
+            boolean idBit = (id & mask) != 0;
+            boolean minBit = (min & mask) != 0;
+            boolean maxBit = (max & mask) != 0;
+            if (!idBit && !minBit && maxBit) {
+                // the rest of the rectangle above this bit is all greater than id
+                next = setBitClearBelow(min, bit);
+                max = clearBitSetBelow(max, bit);
+            } else if (!idBit && minBit && maxBit) {
+                return min;
+            } else if (idBit && !minBit && !maxBit) {
+                return next;
+            } else if (idBit && !minBit && maxBit) {
+                min = setBitClearBelow(min, bit);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Set the given bit and clear the lower bits of the same coordinate
+     */
+    private static long setBitClearBelow(long id, int bit) {
+        long below = (bit % 2 == 0 ? LON_BITS : LAT_BITS) & ((1L << bit) - 1);
+        return (id | (1L << bit)) & ~below;
+    }
+
+    /**
+     * Clear the given bit and set the lower bits of the same coordinate
+     */
+    private static long clearBitSetBelow(long id, int bit) {
+        long below = (bit % 2 == 0 ? LON_BITS : LAT_BITS) & ((1L << bit) - 1);
+        return (id & ~(1L << bit)) | below;
+    }
+
+    /**
+     * Scale an angle from -range to range degrees to a 31-bit integer
+     */
+    private static long scale(double degrees, double range) {
+        long steps = (long) Math.floor((degrees + range) / (2.0 * range) * STEPS);
+        return Math.max(0, Math.min((1L << MAX_LEVEL) - 1, steps));
+    }
+
+    /**
+     * Spread the low 31 bits of v out to the even bits of the result
+     */
+    private static long interleave(long v) {
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    /**
+     * Gather the even bits of v into the low 31 bits of the result
+     */
+    private static long compact(long v) {
+        v &= 0x5555555555555555L;
+        v = (v | (v >>> 1)) & 0x3333333333333333L;
+        v = (v | (v >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+        return v;
+    }
+}
@@ -1,5 +1,8 @@
 package ca.ubc.cs.cpsc210.translink.util;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Compute relationships between points, lines, and rectangles represented by LatLon objects
  */
@@ -28,44 +31,128 @@ public class Geometry {
      * @return                  true if any point on the line is on the boundary or inside the rectangle
      */
     public static boolean rectangleIntersectsLine(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
-        double linePointX1 = src.getLongitude();
-        double linePointY1 = src.getLatitude();
-        double linePointX2 = dst.getLongitude();
-        double linePointY2 = dst.getLatitude();
-
-        double rectangleLeftTopX = northWest.getLongitude();
-        double rectangleLeftTopY = northWest.getLatitude();
-        double rectangleRightBottomX = southEast.getLongitude();
-        double rectangleRightBottomY = southEast.getLatitude();
+        return clip(southEast.getLatitude(), northWest.getLatitude(), northWest.getLongitude(), southEast.getLongitude(),
+                src.getLatitude(), src.getLongitude(), dst.getLatitude(), dst.getLongitude(), new double[2]);
+    }
 
-        double slope = (linePointY2 - linePointY1) / (linePointX2 - linePointX1);
-        double x = (rectangleRightBottomY - linePointY1) / slope + linePointX1;
-        double y = slope * (rectangleLeftTopX - linePointX1) + linePointY1;
+    /**
+     * Clip the line to the rectangle: return the part of the line that is inside or on the boundary of the rectangle
+     * formed by northWest and southEast
+     * @param northWest         the coordinate of the north west corner of the rectangle
+     * @param southEast         the coordinate of the south east corner of the rectangle
+     * @param src               one end of the line
+     * @param dst               the other end of the line
+     * @return                  the ends of the clipped line, in the same direction as src to dst; an end of the line
+     *                          that is inside the rectangle is returned as it is.  null if the line misses the rectangle
+     */
+    public static LatLon[] clipLine(LatLon northWest, LatLon southEast, LatLon src, LatLon dst) {
+        double[] t = new double[2];
+        if (!clip(southEast.getLatitude(), northWest.getLatitude(), northWest.getLongitude(), southEast.getLongitude(),
+                src.getLatitude(), src.getLongitude(), dst.getLatitude(), dst.getLongitude(), t)) {
+            return null;
+        }
+        return new LatLon[] { pointAt(src, dst, t[0]), pointAt(src, dst, t[1]) };
+    }
 
-        if ((linePointX1 < rectangleLeftTopX && linePointX2 < rectangleLeftTopX) ||
-                (linePointY1 < rectangleRightBottomY && linePointY2 < rectangleRightBottomY) ||
-                (linePointX1 > rectangleRightBottomX && linePointX2 > rectangleRightBottomX) ||
-                (linePointY1 > rectangleLeftTopY && linePointY2 > rectangleLeftTopY)) {
-            return false;
+    /**
+     * Clip the path through the given points to the rectangle formed by northWest and southEast, in a single pass
+     * over the points.  Each part of the path that is inside or on the boundary of the rectangle is returned as a
+     * separate list of points, which starts and ends where the path enters and leaves the rectangle.
+     * @param northWest         the coordinate of the north west corner of the rectangle
+     * @param southEast         the coordinate of the south east corner of the rectangle
+     * @param lats              the latitudes of the points of the path, in order along the path
+     * @param lons              the longitudes of the points of the path, in order along the path
+     * @param count             the number of points on the path
+     * @return                  the visible parts of the path, in order along the path; empty if none is visible
+     */
+    public static List<List<LatLon>> clipPath(LatLon northWest, LatLon southEast, double[] lats, double[] lons,
+                                              int count) {
+        double south = southEast.getLatitude();
+        double north = northWest.getLatitude();
+        double west = northWest.getLongitude();
+        double east = southEast.getLongitude();
+        List<List<LatLon>> parts = new ArrayList<>();
+        List<LatLon> part = null;
+        double[] t = new double[2];
+        for (int i = 0; i + 1 < count; i++) {
+            if (!clip(south, north, west, east, lats[i], lons[i], lats[i + 1], lons[i + 1], t)) {
+                part = null;
+                continue;
+            }
+            // the part continues if this segment starts where the last one ended, inside the rectangle
+            boolean continuing = part != null && t[0] == 0;
+            if (!continuing) {
+                part = new ArrayList<>();
+                parts.add(part);
+                part.add(pointAt(lats[i], lons[i], lats[i + 1], lons[i + 1], t[0]));
+            }
+            if (!continuing || t[1] > 0) {
+                part.add(pointAt(lats[i], lons[i], lats[i + 1], lons[i + 1], t[1]));
+            }
+            if (t[1] < 1) {
+                part = null;
+            }
         }
+        return parts;
+    }
 
-        if (y < rectangleLeftTopY && y > rectangleRightBottomY) {
-            return true;
+    /**
+     * Clip the line from (lat1, lon1) to (lat2, lon2) to the rectangle by the Liang-Barsky algorithm.  Points on the
+     * line are (lat1, lon1) + t * (lat2 - lat1, lon2 - lon1) for t from 0 to 1; each side of the rectangle narrows
+     * the range of t that is inside it.  Vertical and horizontal lines, and lines that are a single point, need no
+     * special case: a side parallel to the line either keeps all of it or none of it.
+     * @param t                 receives the range of t of the clipped line
+     * @return                  true if some part of the line is inside or on the boundary of the rectangle
+     */
+    private static boolean clip(double south, double north, double west, double east,
+                                double lat1, double lon1, double lat2, double lon2, double[] t) {
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        t[0] = 0.0;
+        t[1] = 1.0;
+        return clipSide(-dLon, lon1 - west, t) && clipSide(dLon, east - lon1, t)
+                && clipSide(-dLat, lat1 - south, t) && clipSide(dLat, north - lat1, t);
+    }
+
+    /**
+     * Narrow the range t of a line to the side of a rectangle where p * t <= q
+     * @return                  false if no part of the range remains
+     */
+    private static boolean clipSide(double p, double q, double[] t) {
+        if (p == 0) {
+            return q >= 0;
         }
-        y = slope * (rectangleRightBottomX - linePointX1) + linePointY1;
-        if (y < rectangleLeftTopY && y > rectangleRightBottomY) {
-            return true;
+        double r = q / p;
+        if (p < 0) {
+            if (r > t[1]) {
+                return false;
+            }
+            t[0] = Math.max(t[0], r);
+        } else {
+            if (r < t[0]) {
+                return false;
+            }
+            t[1] = Math.min(t[1], r);
         }
+        return true;
+    }
 
-        if (x < rectangleRightBottomX && x > rectangleLeftTopX) {
-            return true;
-        }
-        x = (rectangleLeftTopY - linePointY1) / slope + linePointX1;
-        if (x < rectangleRightBottomX && x > rectangleLeftTopX) {
-            return true;
+    private static LatLon pointAt(LatLon src, LatLon dst, double t) {
+        if (t == 0) {
+            return src;
+        } else if (t == 1) {
+            return dst;
         }
+        return pointAt(src.getLatitude(), src.getLongitude(), dst.getLatitude(), dst.getLongitude(), t);
+    }
 
-        return false;
+    private static LatLon pointAt(double lat1, double lon1, double lat2, double lon2, double t) {
+        if (t == 0) {
+            return new LatLon(lat1, lon1);
+        } else if (t == 1) {
+            return new LatLon(lat2, lon2);
+        }
+        return new LatLon(lat1 + t * (lat2 - lat1), lon1 + t * (lon2 - lon1));
     }
 
     /**
@@ -0,0 +1,98 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+/**
+ * Simplify paths by the Douglas-Peucker algorithm
+ *
+ * Paths are packed in an int array as pairs of latitude and longitude in millionths of a degree, one pair after
+ * another.  Distances are measured in a flat projection centred on the first point of the path, which is accurate
+ * to well under a metre over the extent of a city.
+ */
+public class PathSimplifier {
+    private static final double METRES_PER_MICRODEGREE = 6371000 * Math.PI / 180.0 / 1e6;
+
+    /**
+     * Return the points of the path that must be kept so that no point removed lies more than tolerance metres from
+     * the simplified path.  The first and last points are always kept.
+     *
+     * @param latLons    the path, as latitude and longitude pairs in millionths of a degree
+     * @param tolerance  the greatest distance in metres of a removed point from the simplified path
+     * @return           the simplified path, packed in the same way; latLons itself if no point can be removed
+     */
+    public static int[] simplify(int[] latLons, double tolerance) {
+        int n = latLons.length / 2;
+        if (n <= 2 || tolerance <= 0) {
+            return latLons;
+        }
+        double xScale = Math.cos(Math.toRadians(latLons[0] / 1e6));
+        double limit = tolerance / METRES_PER_MICRODEGREE;
+        double limitSquared = limit * limit;
+
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        int kept = 2;
+
+        // ranges of points still to be simplified, as pairs of first and last index; processed without recursion
+        // so that long paths cannot overflow the call stack
+        int[] ranges = new int[64];
+        int top = 0;
+        ranges[top++] = 0;
+        ranges[top++] = n - 1;
+        while (top > 0) {
+            int last = ranges[--top];
+            int first = ranges[--top];
+            double ax = latLons[2 * first + 1] * xScale;
+            double ay = latLons[2 * first];
+            double dx = latLons[2 * last + 1] * xScale - ax;
+            double dy = latLons[2 * last] - ay;
+            double lengthSquared = dx * dx + dy * dy;
+
+            int farthest = -1;
+            double farthestSquared = limitSquared;
+            for (int i = first + 1; i < last; i++) {
+                double px = latLons[2 * i + 1] * xScale - ax;
+                double py = latLons[2 * i] - ay;
+                double t = lengthSquared == 0 ? 0 : (px * dx + py * dy) / lengthSquared;
+                if (t < 0) {
+                    t = 0;
+                } else if (t > 1) {
+                    t = 1;
+                }
+                double ex = px - t * dx;
+                double ey = py - t * dy;
+                double distanceSquared = ex * ex + ey * ey;
+                if (distanceSquared > farthestSquared) {
+                    farthest = i;
+                    farthestSquared = distanceSquared;
+                }
+            }
+
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                kept++;
+                if (top + 4 > ranges.length) {
+                    int[] grown = new int[ranges.length * 2];
+                    System.arraycopy(ranges, 0, grown, 0, top);
+                    ranges = grown;
+                }
+                ranges[top++] = first;
+                ranges[top++] = farthest;
+                ranges[top++] = farthest;
+                ranges[top++] = last;
+            }
+        }
+
+        if (kept == n) {
+            return latLons;
+        }
+        int[] simplified = new int[kept * 2];
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            if (keep[i]) {
+                simplified[j++] = latLons[2 * i];
+                simplified[j++] = latLons[2 * i + 1];
+            }
+        }
+        return simplified;
+    }
+}
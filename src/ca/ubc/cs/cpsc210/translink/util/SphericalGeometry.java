@@ -5,6 +5,12 @@ package ca.ubc.cs.cpsc210.translink.util;
  */
 public class SphericalGeometry {
     private static final int RADIUS = 6371000;   // radius of earth in metres
+    private static final double METRES_PER_DEGREE = Math.PI / 180.0 * RADIUS;   // along a great circle
+
+    // Bounds within which equirectangularDistance is within EQUIRECTANGULAR_ERROR of distanceBetween
+    public static final double EQUIRECTANGULAR_MAX_DISTANCE = 20000;
+    public static final double EQUIRECTANGULAR_MAX_LATITUDE = 70;
+    public static final double EQUIRECTANGULAR_ERROR = 0.002;
 
     /**
      * Find distance in metres between two lat/lon points
@@ -14,16 +20,170 @@ public class SphericalGeometry {
      * @return distance between p1 and p2 in metres
      */
     public static double distanceBetween(LatLon p1, LatLon p2) {
-        double lat1 = p1.getLatitude() / 180.0 * Math.PI;
-        double lat2 = p2.getLatitude() / 180.0 * Math.PI;
-        double deltaLon = (p2.getLongitude() - p1.getLongitude()) / 180.0 * Math.PI;
-        double deltaLat = (p2.getLatitude() - p1.getLatitude()) / 180.0 * Math.PI;
+        return distanceBetween(p1.getLatitude(), p1.getLongitude(), p2.getLatitude(), p2.getLongitude());
+    }
+
+    /**
+     * Find distance in metres between two points given by latitude and longitude in degrees
+     *
+     * @param lat1  latitude of first point
+     * @param lon1  longitude of first point
+     * @param lat2  latitude of second point
+     * @param lon2  longitude of second point
+     * @return distance between the two points in metres
+     */
+    public static double distanceBetween(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = lat1 / 180.0 * Math.PI;
+        double phi2 = lat2 / 180.0 * Math.PI;
+        double deltaLon = (lon2 - lon1) / 180.0 * Math.PI;
+        double deltaLat = (lat2 - lat1) / 180.0 * Math.PI;
 
         double a = Math.sin(deltaLat / 2.0) * Math.sin(deltaLat / 2.0)
-                + Math.cos(lat1) * Math.cos(lat2)
+                + Math.cos(phi1) * Math.cos(phi2)
                 * Math.sin(deltaLon / 2.0) * Math.sin(deltaLon / 2.0);
         double c = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
 
         return c * RADIUS;
     }
+
+    /**
+     * Find distance in metres between two points given by latitude and longitude in degrees, with the cosine of
+     * each latitude already known (see cosLatitude).  This gives exactly the same result as
+     * distanceBetween(lat1, lon1, lat2, lon2) with two fewer trigonometric functions, so points whose location does
+     * not change, such as stops, can keep the cosine of their latitude and not compute it again for every distance.
+     *
+     * @param lat1     latitude of first point
+     * @param lon1     longitude of first point
+     * @param cosLat1  cosine of the latitude of the first point
+     * @param lat2     latitude of second point
+     * @param lon2     longitude of second point
+     * @param cosLat2  cosine of the latitude of the second point
+     * @return distance between the two points in metres
+     */
+    public static double distanceBetween(double lat1, double lon1, double cosLat1,
+                                         double lat2, double lon2, double cosLat2) {
+        double deltaLon = (lon2 - lon1) / 180.0 * Math.PI;
+        double deltaLat = (lat2 - lat1) / 180.0 * Math.PI;
+        double sinLat = Math.sin(deltaLat / 2.0);
+        double sinLon = Math.sin(deltaLon / 2.0);
+
+        double a = sinLat * sinLat + cosLat1 * cosLat2 * sinLon * sinLon;
+        double c = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+
+        return c * RADIUS;
+    }
+
+    /**
+     * Find the cosine of a latitude, as used by distanceBetween
+     *
+     * @param lat  the latitude in degrees
+     * @return     the cosine of the latitude
+     */
+    public static double cosLatitude(double lat) {
+        return Math.cos(lat / 180.0 * Math.PI);
+    }
+
+    /**
+     * Find distances in metres from one point to each of many points, given by latitude and longitude in degrees.
+     * distances[i] is set to the distance from (lat, lon) to (lats[i], lons[i]) for i from 0 to count - 1, exactly as
+     * distanceBetween would compute it.
+     *
+     * The points are read from primitive arrays and the terms that depend only on (lat, lon) are computed once,
+     * so the loop does no allocation and no object dereferencing per point.
+     *
+     * @param lat        latitude of the point from which distances are measured
+     * @param lon        longitude of the point from which distances are measured
+     * @param lats       latitudes of the other points
+     * @param lons       longitudes of the other points
+     * @param count      the number of other points
+     * @param distances  receives the distance to each of the other points in metres
+     */
+    public static void distancesBetween(double lat, double lon, double[] lats, double[] lons, int count,
+                                        double[] distances) {
+        double phi1 = lat / 180.0 * Math.PI;
+        double cosPhi1 = Math.cos(phi1);
+        for (int i = 0; i < count; i++) {
+            double phi2 = lats[i] / 180.0 * Math.PI;
+            double deltaLon = (lons[i] - lon) / 180.0 * Math.PI;
+            double deltaLat = (lats[i] - lat) / 180.0 * Math.PI;
+            double sinLat = Math.sin(deltaLat / 2.0);
+            double sinLon = Math.sin(deltaLon / 2.0);
+
+            double a = sinLat * sinLat + cosPhi1 * Math.cos(phi2) * sinLon * sinLon;
+            double c = 2.0 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+            distances[i] = c * RADIUS;
+        }
+    }
+
+    /**
+     * Find approximate distances in metres from one point to each of many points, given by latitude and longitude
+     * in degrees, treating the earth as flat around the first point.  distances[i] is set to
+     * equirectangularDistance(lat, lon, lats[i], lons[i]) for i from 0 to count - 1.
+     *
+     * The loop body is only multiplications, additions and a square root, which the JIT can compile to vector
+     * instructions.
+     *
+     * @param lat        latitude of the point from which distances are measured
+     * @param lon        longitude of the point from which distances are measured
+     * @param lats       latitudes of the other points
+     * @param lons       longitudes of the other points
+     * @param count      the number of other points
+     * @param distances  receives the approximate distance to each of the other points in metres
+     */
+    public static void equirectangularDistances(double lat, double lon, double[] lats, double[] lons, int count,
+                                                double[] distances) {
+        double cosLat = Math.cos(lat / 180.0 * Math.PI);
+        for (int i = 0; i < count; i++) {
+            double x = lonDifference(lons[i], lon) * cosLat;
+            double y = lats[i] - lat;
+            distances[i] = Math.sqrt(x * x + y * y) * METRES_PER_DEGREE;
+        }
+    }
+
+    /**
+     * Find approximate distance in metres between two points given by latitude and longitude in degrees, treating
+     * the earth as flat around the first point.  This takes no trigonometric functions once the cosine of the first
+     * latitude is known, so it can be used to rule out points before computing their exact distance.
+     *
+     * For points less than EQUIRECTANGULAR_MAX_DISTANCE apart, where the first point is no more than
+     * EQUIRECTANGULAR_MAX_LATITUDE degrees from the equator, the result differs from distanceBetween by less than
+     * EQUIRECTANGULAR_ERROR times the distance.  (Measured worst cases: 0.17% anywhere in those bounds, 0.09%
+     * between latitudes 45 and 55, which includes Vancouver; the error grows with the distance and the latitude.)
+     * The difference in longitude is taken the short way round, so points either side of the antimeridian are close.
+     *
+     * @param lat1     latitude of first point
+     * @param lon1     longitude of first point
+     * @param lat2     latitude of second point
+     * @param lon2     longitude of second point
+     * @param cosLat1  cosine of the latitude of the first point
+     * @return approximate distance between the two points in metres
+     */
+    public static double equirectangularDistance(double lat1, double lon1, double lat2, double lon2, double cosLat1) {
+        double x = lonDifference(lon2, lon1) * cosLat1;
+        double y = lat2 - lat1;
+        return Math.sqrt(x * x + y * y) * METRES_PER_DEGREE;
+    }
+
+    /**
+     * Return lon2 - lon1 in degrees wrapped into [-180, 180], without a branch so that loops using it can still be
+     * compiled to vector instructions
+     */
+    private static double lonDifference(double lon2, double lon1) {
+        double difference = lon2 - lon1;
+        return difference - 360.0 * Math.rint(difference / 360.0);
+    }
+
+    /**
+     * Find approximate distance in metres between two points given by latitude and longitude in degrees, treating
+     * the earth as flat around the first point; see equirectangularDistance(lat1, lon1, lat2, lon2, cosLat1)
+     *
+     * @param lat1  latitude of first point
+     * @param lon1  longitude of first point
+     * @param lat2  latitude of second point
+     * @param lon2  longitude of second point
+     * @return approximate distance between the two points in metres
+     */
+    public static double equirectangularDistance(double lat1, double lon1, double lat2, double lon2) {
+        return equirectangularDistance(lat1, lon1, lat2, lon2, Math.cos(lat1 / 180.0 * Math.PI));
+    }
 }
@@ -0,0 +1,123 @@
+package ca.ubc.cs.cpsc210.translink;
+
+import ca.ubc.cs.cpsc210.translink.model.Route;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.RoutePattern;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.parsers.RouteMapParser;
+import ca.ubc.cs.cpsc210.translink.parsers.RouteParser;
+import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The transit data shipped with the app, read straight from res/raw for tests and benchmarks, which run from the
+ * module directory without Android's resources
+ */
+public class TransitData {
+    public static final File RAW = new File("res/raw");
+    public static final File STOPS = new File(RAW, "stops.json");
+    public static final File ROUTES = new File(RAW, "allroutes.json");
+    public static final File ROUTE_MAPS = new File(RAW, "allroutemapstxt.txt");
+
+    /**
+     * Return the contents of a file
+     */
+    public static byte[] read(File file) throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    /**
+     * Replace all stops and routes with those parsed from the stops, routes and route map files, as
+     * SnapshotCompiler does
+     */
+    public static void parseAll() throws Exception {
+        StopManager.getInstance().beginReload();
+        try {
+            parseStopsAndRoutes();
+            new RouteMapParser(null).parseRouteMaps(read(ROUTE_MAPS));
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+    }
+
+    /**
+     * Add the stops and routes parsed from the stops and routes files, but not the route maps, to the managers
+     */
+    public static void parseStopsAndRoutes() throws Exception {
+        InputStream stops = new FileInputStream(STOPS);
+        try {
+            new StopParser(null).parseStops(new InputStreamReader(stops, "UTF-8"));
+        } finally {
+            stops.close();
+        }
+        new RouteParser(null).parseRoutes(new String(read(ROUTES), Charset.forName("UTF-8")));
+    }
+
+    /**
+     * Describe every stop, route and route pattern now in the managers, one line each, in an order that does not
+     * depend on the order in which they were added, so that two loads of the same data describe the same
+     */
+    public static List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        List<Stop> stops = new ArrayList<>();
+        for (Stop stop : StopManager.getInstance()) {
+            stops.add(stop);
+        }
+        Collections.sort(stops, new Comparator<Stop>() {
+            @Override
+            public int compare(Stop s1, Stop s2) {
+                return Integer.compare(s1.getNumber(), s2.getNumber());
+            }
+        });
+        for (Stop stop : stops) {
+            List<String> routes = new ArrayList<>();
+            for (Route route : stop.getRoutes()) {
+                routes.add(route.getNumber());
+            }
+            Collections.sort(routes);
+            LatLon locn = stop.getLocn();
+            lines.add("stop " + stop.getNumber() + " " + stop.getName() + " " + locn.getLatitude() + ","
+                    + locn.getLongitude() + " " + routes);
+        }
+        List<Route> routes = new ArrayList<>();
+        for (Route route : RouteManager.getInstance()) {
+            routes.add(route);
+        }
+        Collections.sort(routes, new Comparator<Route>() {
+            @Override
+            public int compare(Route r1, Route r2) {
+                return r1.getNumber().compareTo(r2.getNumber());
+            }
+        });
+        for (Route route : routes) {
+            StringBuilder line = new StringBuilder("route " + route.getNumber() + " " + route.getName());
+            for (Stop stop : route.getStops()) {
+                line.append(' ').append(stop.getNumber());
+            }
+            lines.add(line.toString());
+            for (RoutePattern pattern : route.getPatterns()) {
+                StringBuilder path = new StringBuilder();
+                for (int i = 0; i < pattern.getNumPoints(); i++) {
+                    path.append(RoutePattern.toMicrodegrees(pattern.getLatitude(i))).append(',')
+                            .append(RoutePattern.toMicrodegrees(pattern.getLongitude(i))).append(';');
+                }
+                lines.add("pattern " + route.getNumber() + " " + pattern.getName() + " " + pattern.getDestination()
+                        + " " + pattern.getDirection() + " " + path);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,68 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nearest stop in res/raw/stops.json to each of a set of random points in and around the city, found by the
+ * stop grid behind StopManager.findNearestTo and by a scan computing the distance to every stop, as
+ * findNearestTo did before the grid
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearestStopBenchmark {
+    private static final int POINTS = 100;
+
+    private LatLon[] points;
+    private List<Stop> stops;
+
+    @Setup
+    public void loadStops() throws Exception {
+        TransitData.parseAll();
+        stops = new ArrayList<>();
+        for (Stop stop : StopManager.getInstance()) {
+            stops.add(stop);
+        }
+        Random random = new Random(1);
+        points = new LatLon[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            points[i] = new LatLon(49.0 + random.nextDouble() * 0.4, -123.3 + random.nextDouble() * 0.6);
+        }
+    }
+
+    @Benchmark
+    public void grid(Blackhole blackhole) {
+        StopManager stopManager = StopManager.getInstance();
+        for (LatLon pt : points) {
+            blackhole.consume(stopManager.findNearestTo(pt));
+        }
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole blackhole) {
+        for (LatLon pt : points) {
+            Stop nearest = null;
+            double closest = StopManager.RADIUS;
+            for (Stop stop : stops) {
+                double distance = SphericalGeometry.distanceBetween(pt, stop.getLocn());
+                if (distance < closest) {
+                    closest = distance;
+                    nearest = stop;
+                }
+            }
+            blackhole.consume(nearest);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the points of every route pattern path in res/raw/allroutemapstxt.txt at the level of detail drawn at a
+ * city-wide (10), district (13) and street (16) zoom level, as plotRoutes hands them to the map.  The number of
+ * points drawn at the zoom level is printed when each run ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathDetailBenchmark {
+    @Param({ "10", "13", "16" })
+    private int zoomLevel;
+
+    private List<RoutePattern> patterns;
+    private int vertices;
+
+    @Setup
+    public void loadPaths() throws Exception {
+        TransitData.parseAll();
+        patterns = new ArrayList<>();
+        for (Route route : RouteManager.getInstance()) {
+            patterns.addAll(route.getPatterns());
+        }
+        for (RoutePattern pattern : patterns) {
+            vertices += pattern.getPath(zoomLevel).size();
+        }
+    }
+
+    @TearDown
+    public void reportVertices() {
+        System.out.println("zoom level " + zoomLevel + ": " + vertices + " vertices in " + patterns.size()
+                + " paths");
+    }
+
+    @Benchmark
+    public double pathsAtZoom() {
+        double sum = 0;
+        for (RoutePattern pattern : patterns) {
+            for (LatLon point : pattern.getPath(zoomLevel)) {
+                sum += point.getLatitude() + point.getLongitude();
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,112 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading every point of every route pattern path in res/raw/allroutemapstxt.txt: straight from the packed
+ * coordinates, as the segment index does, through the accessors of RoutePattern, which read the path anew for
+ * each point, through the LatLon view returned by getPath(), and from lists of LatLon, as paths were kept before
+ * they were packed.  The store benchmarks build all the paths in each form; run with -prof gc to see the
+ * bytes allocated, which is the heap the paths take.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathIterationBenchmark {
+    private List<RoutePattern> patterns;
+    private List<List<LatLon>> latLonPaths;
+
+    @Setup
+    public void loadPaths() throws Exception {
+        TransitData.parseAll();
+        patterns = new ArrayList<>();
+        for (Route route : RouteManager.getInstance()) {
+            patterns.addAll(route.getPatterns());
+        }
+        latLonPaths = storeLatLonLists();
+    }
+
+    @Benchmark
+    public double readPackedArray() {
+        double sum = 0;
+        for (RoutePattern pattern : patterns) {
+            int[] path = pattern.getPackedPath();
+            for (int i = 0; i < path.length; i += 2) {
+                sum += path[i] / 1e6 + path[i + 1] / 1e6;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double readAccessors() {
+        double sum = 0;
+        for (RoutePattern pattern : patterns) {
+            int count = pattern.getNumPoints();
+            for (int i = 0; i < count; i++) {
+                sum += pattern.getLatitude(i) + pattern.getLongitude(i);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double readPathView() {
+        double sum = 0;
+        for (RoutePattern pattern : patterns) {
+            for (LatLon point : pattern.getPath()) {
+                sum += point.getLatitude() + point.getLongitude();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double readLatLonLists() {
+        double sum = 0;
+        for (List<LatLon> path : latLonPaths) {
+            for (LatLon point : path) {
+                sum += point.getLatitude() + point.getLongitude();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<int[]> storePacked() {
+        List<int[]> paths = new ArrayList<>(patterns.size());
+        for (RoutePattern pattern : patterns) {
+            int count = pattern.getNumPoints();
+            int[] path = new int[2 * count];
+            for (int i = 0; i < count; i++) {
+                path[2 * i] = RoutePattern.toMicrodegrees(pattern.getLatitude(i));
+                path[2 * i + 1] = RoutePattern.toMicrodegrees(pattern.getLongitude(i));
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+
+    @Benchmark
+    public List<List<LatLon>> storeLatLonLists() {
+        List<List<LatLon>> paths = new ArrayList<>(patterns.size());
+        for (RoutePattern pattern : patterns) {
+            List<LatLon> path = new ArrayList<>();
+            int count = pattern.getNumPoints();
+            for (int i = 0; i < count; i++) {
+                path.add(new LatLon(pattern.getLatitude(i), pattern.getLongitude(i)));
+            }
+            paths.add(path);
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,84 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.parsers.StopParser;
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing res/raw/stops.json into empty managers, which looks up a route for every route number of every stop, and
+ * those lookups alone: by key in the route map, as getRouteWithNumber does now, and by comparing the number of
+ * every route in turn, as it did before
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteLookupBenchmark {
+    private byte[] stopsJson;
+    private String[] routeNumbers;
+
+    @Setup
+    public void loadStops() throws Exception {
+        TransitData.parseAll();
+        stopsJson = TransitData.read(TransitData.STOPS);
+        // the route numbers in the order the stop parser looks them up, each a new string as it is when parsed
+        JSONArray stops = new JSONArray(new String(stopsJson, Charset.forName("UTF-8")));
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < stops.length(); i++) {
+            for (String number : stops.getJSONObject(i).getString("Routes").split(",")) {
+                numbers.add(new String(number.trim()));
+            }
+        }
+        routeNumbers = numbers.toArray(new String[numbers.size()]);
+    }
+
+    @TearDown
+    public void restoreNetwork() throws Exception {
+        TransitData.parseAll();
+    }
+
+    @Benchmark
+    public int parseStops() throws Exception {
+        StopManager.getInstance().beginReload();
+        try {
+            new StopParser(null).parseStops(new InputStreamReader(new ByteArrayInputStream(stopsJson), "UTF-8"));
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        return RouteManager.getInstance().getNumRoutes();
+    }
+
+    @Benchmark
+    public void keyedLookup(Blackhole blackhole) {
+        RouteManager routeManager = RouteManager.getInstance();
+        for (String number : routeNumbers) {
+            blackhole.consume(routeManager.getRouteWithNumber(number));
+        }
+    }
+
+    @Benchmark
+    public void linearLookup(Blackhole blackhole) {
+        RouteManager routeManager = RouteManager.getInstance();
+        for (String number : routeNumbers) {
+            Route found = null;
+            for (Route route : routeManager) {
+                if (route.getNumber().equals(number)) {
+                    found = route;
+                    break;
+                }
+            }
+            blackhole.consume(found);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the path runs found in a rectangle by the route manager's segment index against a check of every
+ * segment of every path
+ */
+public class SegmentIndexTest {
+    private static final int QUERIES = 3000;
+    // how far, in degrees, a rectangle is grown or shrunk to allow for rounding of segments that just touch it
+    private static final double EPSILON = 1e-9;
+
+    private RouteManager routeManager;
+    private List<RoutePattern> patterns;
+
+    @Before
+    public void setUp() {
+        routeManager = RouteManager.getInstance();
+        routeManager.clearRoutes();
+        Random random = new Random(25);
+        patterns = new ArrayList<>();
+        for (int r = 0; r < 40; r++) {
+            Route route = routeManager.getRouteWithNumber(String.valueOf(r));
+            for (int p = 0; p < 3; p++) {
+                RoutePattern pattern = new RoutePattern(r + "-" + p, "Destination", "EAST", route);
+                pattern.setPath(randomWalk(random, 50 + random.nextInt(300)));
+                patterns.add(pattern);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        routeManager.clearRoutes();
+    }
+
+    @Test
+    public void testRunsMatchSegments() {
+        Random random = new Random(26);
+        for (int q = 0; q < QUERIES; q++) {
+            LatLon[] corners = randomRectangle(random, q % 10 == 0 ? 0.5 : 0.05);
+            checkRuns(routeManager.pathRunsInRectangle(corners[0], corners[1]), patterns, corners[0], corners[1]);
+        }
+    }
+
+    @Test
+    public void testRunsOfSelectedPatterns() {
+        Random random = new Random(27);
+        for (int q = 0; q < QUERIES / 10; q++) {
+            List<RoutePattern> selected = new ArrayList<>();
+            for (RoutePattern pattern : patterns) {
+                if (random.nextInt(10) == 0) {
+                    selected.add(pattern);
+                }
+            }
+            LatLon[] corners = randomRectangle(random, 0.1);
+            List<PathRun> runs = routeManager.pathRunsInRectangle(corners[0], corners[1], selected);
+            checkRuns(runs, selected, corners[0], corners[1]);
+        }
+    }
+
+    @Test
+    public void testReplacedPathIsReindexed() {
+        RoutePattern pattern = patterns.get(0);
+        LatLon northWest = new LatLon(60.1, -110.1);
+        LatLon southEast = new LatLon(59.9, -109.9);
+        assertTrue(routeManager.pathRunsInRectangle(northWest, southEast).isEmpty());
+        pattern.setPath(new int[] { 59950000, -110000000, 60050000, -110000000 });
+        List<PathRun> runs = routeManager.pathRunsInRectangle(northWest, southEast);
+        assertEquals(1, runs.size());
+        assertSame(pattern, runs.get(0).getPattern());
+        assertEquals(0, runs.get(0).getFirstPoint());
+        assertEquals(1, runs.get(0).getLastPoint());
+    }
+
+    /**
+     * Check that the runs cover every segment of the given patterns that clearly crosses the rectangle, and no
+     * segment that is clearly outside it, and that runs of one pattern neither overlap nor touch
+     */
+    private static void checkRuns(List<PathRun> runs, List<RoutePattern> searched, LatLon northWest,
+                                  LatLon southEast) {
+        Set<String> found = new HashSet<>();
+        PathRun previous = null;
+        for (PathRun run : runs) {
+            assertTrue(run.getFirstPoint() < run.getLastPoint());
+            if (previous != null && previous.getPattern() == run.getPattern()) {
+                assertTrue(previous.getLastPoint() < run.getFirstPoint());
+            }
+            for (int s = run.getFirstPoint(); s < run.getLastPoint(); s++) {
+                found.add(run.getPattern().getName() + ":" + s);
+            }
+            previous = run;
+        }
+        LatLon grownNorthWest = new LatLon(northWest.getLatitude() + EPSILON, northWest.getLongitude() - EPSILON);
+        LatLon grownSouthEast = new LatLon(southEast.getLatitude() - EPSILON, southEast.getLongitude() + EPSILON);
+        LatLon shrunkNorthWest = new LatLon(northWest.getLatitude() - EPSILON, northWest.getLongitude() + EPSILON);
+        LatLon shrunkSouthEast = new LatLon(southEast.getLatitude() + EPSILON, southEast.getLongitude() - EPSILON);
+        int expected = 0;
+        for (RoutePattern pattern : searched) {
+            for (int s = 0; s + 1 < pattern.getNumPoints(); s++) {
+                LatLon src = new LatLon(pattern.getLatitude(s), pattern.getLongitude(s));
+                LatLon dst = new LatLon(pattern.getLatitude(s + 1), pattern.getLongitude(s + 1));
+                String segment = pattern.getName() + ":" + s;
+                if (Geometry.rectangleIntersectsLine(shrunkNorthWest, shrunkSouthEast, src, dst)) {
+                    assertTrue("missed " + segment, found.contains(segment));
+                } else if (!Geometry.rectangleIntersectsLine(grownNorthWest, grownSouthEast, src, dst)) {
+                    assertFalse("found " + segment, found.contains(segment));
+                }
+                if (found.contains(segment)) {
+                    expected++;
+                }
+            }
+        }
+        // no segment of a pattern that was not searched is found
+        assertEquals(expected, found.size());
+    }
+
+    /**
+     * Return a path wandering through the city in steps of up to about a kilometre, packed in microdegrees
+     */
+    private static int[] randomWalk(Random random, int count) {
+        int[] path = new int[2 * count];
+        int lat = 49000000 + random.nextInt(400000);
+        int lon = -123300000 + random.nextInt(600000);
+        for (int i = 0; i < count; i++) {
+            path[2 * i] = lat;
+            path[2 * i + 1] = lon;
+            // mostly along streets running north-south or east-west
+            int step = random.nextInt(3);
+            if (step != 1) {
+                lat += random.nextInt(20001) - 10000;
+            }
+            if (step != 0) {
+                lon += random.nextInt(20001) - 10000;
+            }
+        }
+        return path;
+    }
+
+    private static LatLon[] randomRectangle(Random random, double size) {
+        double north = 48.95 + random.nextDouble() * 0.6;
+        double west = -123.4 + random.nextDouble() * 0.8;
+        return new LatLon[] { new LatLon(north, west),
+                new LatLon(north - random.nextDouble() * size, west + random.nextDouble() * size) };
+    }
+}
@@ -0,0 +1,143 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import ca.ubc.cs.cpsc210.translink.util.SphericalGeometry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the nearest stop queries of the stop grid against a scan over every stop, on random stops spread like
+ * those of a city, on stops near the north pole, where a degree of longitude is short, and on stops either side of
+ * the antimeridian, where the columns of the grid wrap round
+ */
+public class StopGridTest {
+    private static final int QUERIES = 2000;
+    private static final double DELTA = 1e-6;
+
+    @Test
+    public void testCityStops() {
+        Random random = new Random(20);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            // most stops in clusters, as they are along streets, and some spread thinly
+            double lat = 49.0 + random.nextDouble() * 0.4;
+            double lon = -123.3 + random.nextDouble() * 0.6;
+            if (i % 4 != 0 && !stops.isEmpty()) {
+                LatLon near = stops.get(random.nextInt(stops.size())).getLocn();
+                lat = near.getLatitude() + random.nextGaussian() * 0.002;
+                lon = near.getLongitude() + random.nextGaussian() * 0.003;
+            }
+            stops.add(new Stop(50000 + i, "Stop " + i, new LatLon(lat, lon)));
+        }
+        StopGrid grid = gridOf(stops);
+        for (int q = 0; q < QUERIES; q++) {
+            LatLon pt = new LatLon(48.9 + random.nextDouble() * 0.6, -123.4 + random.nextDouble() * 0.8);
+            double radius = 50 + random.nextDouble() * (q % 10 == 0 ? 50000 : 2000);
+            checkQueries(grid, stops, pt, radius, 1 + random.nextInt(q % 10 == 0 ? 5000 : 20));
+        }
+    }
+
+    @Test
+    public void testPolarStops() {
+        Random random = new Random(21);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double lat = 80 + random.nextDouble() * 9.99;
+            double lon = -180 + random.nextDouble() * 360;
+            stops.add(new Stop(60000 + i, "Stop " + i, new LatLon(lat, lon)));
+        }
+        StopGrid grid = gridOf(stops);
+        for (int q = 0; q < QUERIES; q++) {
+            LatLon pt = new LatLon(79.5 + random.nextDouble() * 10.49, -60 + random.nextDouble() * 120);
+            double radius = 1000 + random.nextDouble() * 200000;
+            checkQueries(grid, stops, pt, radius, 1 + random.nextInt(30));
+        }
+    }
+
+    @Test
+    public void testAntimeridianStops() {
+        Random random = new Random(22);
+        List<Stop> stops = new ArrayList<>();
+        // a city straddling longitude 180, as Taveuni in Fiji does
+        for (int i = 0; i < 2000; i++) {
+            double lat = -17 + random.nextDouble() * 0.5;
+            double lon = 179.7 + random.nextDouble() * 0.6;
+            stops.add(new Stop(70000 + i, "Stop " + i, new LatLon(lat, lon > 180 ? lon - 360 : lon)));
+        }
+        StopGrid grid = gridOf(stops);
+        for (int q = 0; q < QUERIES; q++) {
+            double lon = 179.6 + random.nextDouble() * 0.8;
+            LatLon pt = new LatLon(-17.1 + random.nextDouble() * 0.7, lon > 180 ? lon - 360 : lon);
+            double radius = 50 + random.nextDouble() * (q % 10 == 0 ? 50000 : 5000);
+            checkQueries(grid, stops, pt, radius, 1 + random.nextInt(q % 10 == 0 ? 2000 : 20));
+        }
+        // the nearest stop lies across the antimeridian, a few metres from one nearly a whole cell away
+        StopGrid pair = gridOf(Arrays.asList(new Stop(70000, "West", new LatLon(-17, 179.991)),
+                new Stop(70001, "East", new LatLon(-17, -179.9999))));
+        assertEquals(70001, pair.findNearestTo(new LatLon(-17, 179.9999), 100000).getNumber());
+        assertEquals(2, pair.findWithin(new LatLon(-17, -179.995), 2000).size());
+    }
+
+    @Test
+    public void testEmptyGrid() {
+        StopGrid grid = new StopGrid();
+        LatLon pt = new LatLon(49.26, -123.25);
+        assertNull(grid.findNearestTo(pt, 1000));
+        assertTrue(grid.findKNearest(pt, 5, 1000).isEmpty());
+        assertTrue(grid.findWithin(pt, 1000).isEmpty());
+    }
+
+    /**
+     * Check the nearest stop, the k nearest stops and the stops within radius of pt against the distances of all
+     * stops from pt.  Stops at the same distance may be found in either order, so distances are compared.
+     */
+    private static void checkQueries(StopGrid grid, List<Stop> stops, LatLon pt, double radius, int k) {
+        List<Double> within = new ArrayList<>();
+        for (Stop stop : stops) {
+            double distance = distanceTo(pt, stop);
+            if (distance <= radius) {
+                within.add(distance);
+            }
+        }
+        Collections.sort(within);
+
+        Stop nearest = grid.findNearestTo(pt, radius);
+        if (within.isEmpty()) {
+            assertNull(nearest);
+        } else {
+            assertNotNull("nothing near " + pt, nearest);
+            assertEquals(within.get(0), distanceTo(pt, nearest), DELTA);
+        }
+        assertEquals(within.subList(0, Math.min(k, within.size())),
+                distancesTo(pt, grid.findKNearest(pt, k, radius)));
+        assertEquals(within, distancesTo(pt, grid.findWithin(pt, radius)));
+    }
+
+    private static StopGrid gridOf(List<Stop> stops) {
+        StopGrid grid = new StopGrid();
+        for (Stop stop : stops) {
+            grid.add(stop);
+        }
+        return grid;
+    }
+
+    private static double distanceTo(LatLon pt, Stop stop) {
+        return SphericalGeometry.distanceBetween(pt.getLatitude(), pt.getLongitude(),
+                stop.getLocn().getLatitude(), stop.getLocn().getLongitude());
+    }
+
+    private static List<Double> distancesTo(LatLon pt, List<Stop> stops) {
+        List<Double> distances = new ArrayList<>();
+        for (Stop stop : stops) {
+            distances.add(distanceTo(pt, stop));
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,189 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of when the stop manager's snapshot is rebuilt: changes are seen at once by the live stops and by the next
+ * snapshot asked for, a snapshot with one stop moved is the same as one built anew, and snapshots can be built
+ * while stops and routes are being linked on other threads
+ */
+public class StopManagerTest {
+
+    @After
+    public void clearNetwork() {
+        StopManager.getInstance().clearStops();
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Test
+    public void testStopsAddedInUpdateAreLive() {
+        StopManager stopManager = StopManager.getInstance();
+        stopManager.clearStops();
+        TransitSnapshot before = stopManager.getSnapshot();
+        stopManager.beginUpdate();
+        try {
+            Stop stop = stopManager.getStopWithId(51234);
+            assertEquals(1, stopManager.getNumStops());
+            assertSame(stop, stopManager.iterator().next());
+            // queries keep answering from the snapshot published before the update
+            assertSame(before, stopManager.getSnapshot());
+        } finally {
+            stopManager.endUpdate();
+        }
+        assertEquals(1, stopManager.getSnapshot().getNumStops());
+    }
+
+    @Test(timeout = 10000)
+    public void testManyChangesRebuildOnce() {
+        StopManager stopManager = StopManager.getInstance();
+        stopManager.clearStops();
+        Route route = RouteManager.getInstance().getRouteWithNumber("R1");
+        for (int i = 0; i < 8500; i++) {
+            route.addStop(stopManager.getStopWithId(50000 + i));
+        }
+        assertEquals(8500, stopManager.getNumStops());
+        TransitSnapshot snapshot = stopManager.getSnapshot();
+        assertEquals(8500, snapshot.getNumStops());
+        assertEquals(8500, snapshot.getNumStopsOnRoute(snapshot.getRouteIndex(route)));
+        assertSame(snapshot, stopManager.getSnapshot());
+    }
+
+    @Test
+    public void testMovedStopMatchesRebuiltSnapshot() throws Exception {
+        TransitData.parseAll();
+        StopManager stopManager = StopManager.getInstance();
+        List<Stop> stops = new ArrayList<>();
+        for (Stop stop : stopManager) {
+            stops.add(stop);
+        }
+        Random random = new Random(30);
+        for (int i = 0; i < 50; i++) {
+            Stop stop = stops.get(random.nextInt(stops.size()));
+            LatLon locn = stop.getLocn();
+            // mostly short moves, as from one location fix to the next, and some across the city
+            double spread = i % 5 == 0 ? 0.2 : 0.0005;
+            stop.setLocn(new LatLon(locn.getLatitude() + random.nextGaussian() * spread,
+                    locn.getLongitude() + random.nextGaussian() * spread));
+            checkSameAsRebuilt(stopManager.getSnapshot(), random);
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLinkWhilePublishing() throws Exception {
+        StopManager stopManager = StopManager.getInstance();
+        stopManager.clearStops();
+        final Route[] routes = new Route[4];
+        final Stop[] stops = new Stop[20000];
+        for (int r = 0; r < routes.length; r++) {
+            routes[r] = RouteManager.getInstance().getRouteWithNumber("R" + r);
+        }
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = stopManager.getStopWithId(50000 + i);
+        }
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // one thread links from the route side and one from the stop side, in different orders
+        Thread byRoute = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < stops.length; i++) {
+                        routes[i % routes.length].addStop(stops[i]);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+        Thread byStop = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = stops.length - 1; i >= 0; i--) {
+                        stops[i].addRoute(routes[(i * 7 + 1) % routes.length]);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+        byRoute.start();
+        byStop.start();
+        while (byRoute.isAlive() || byStop.isAlive()) {
+            stopManager.transitChanged();
+            checkLinks(stopManager.getSnapshot(), false);
+        }
+        byRoute.join();
+        byStop.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        TransitSnapshot snapshot = stopManager.getSnapshot();
+        assertEquals(stops.length, snapshot.getNumStops());
+        assertEquals(routes.length, snapshot.getNumRoutes());
+        checkLinks(snapshot, true);
+    }
+
+    /**
+     * Check that every link between a stop and a route in given snapshot is also made on both the stop and the route.
+     * If complete, also check that the snapshot has every link the routes have.
+     */
+    private static void checkLinks(TransitSnapshot snapshot, boolean complete) {
+        for (int r = 0; r < snapshot.getNumRoutes(); r++) {
+            Route route = snapshot.getRouteAt(r);
+            for (int i = 0; i < snapshot.getNumStopsOnRoute(r); i++) {
+                Stop stop = snapshot.getStopAt(snapshot.getStopOnRoute(r, i));
+                assertTrue(route.hasStop(stop));
+                assertTrue(snapshot.isStopOnRoute(snapshot.getStopOnRoute(r, i), r));
+                if (complete) {
+                    assertTrue(stop.getRoutes().contains(route));
+                }
+            }
+            if (complete) {
+                assertEquals(route.getStops().size(), snapshot.getNumStopsOnRoute(r));
+            }
+        }
+    }
+
+    /**
+     * Check that given snapshot has the same stop order, cell ids, links and query results as one built anew
+     */
+    private static void checkSameAsRebuilt(TransitSnapshot snapshot, Random random) {
+        TransitSnapshot rebuilt = new TransitSnapshot(StopManager.getInstance(), RouteManager.getInstance(),
+                snapshot.getVersion());
+        assertEquals(rebuilt.getNumStops(), snapshot.getNumStops());
+        for (int s = 0; s < rebuilt.getNumStops(); s++) {
+            Stop stop = rebuilt.getStopAt(s);
+            assertSame(stop, snapshot.getStopAt(s));
+            assertEquals(s, snapshot.getStopIndex(stop));
+            assertEquals(rebuilt.getCellId(s), snapshot.getCellId(s));
+            assertEquals(rebuilt.getNumRoutesAtStop(s), snapshot.getNumRoutesAtStop(s));
+            for (int i = 0; i < rebuilt.getNumRoutesAtStop(s); i++) {
+                assertEquals(rebuilt.getRouteAtStop(s, i), snapshot.getRouteAtStop(s, i));
+            }
+        }
+        for (int r = 0; r < rebuilt.getNumRoutes(); r++) {
+            assertEquals(rebuilt.getNumStopsOnRoute(r), snapshot.getNumStopsOnRoute(r));
+            for (int i = 0; i < rebuilt.getNumStopsOnRoute(r); i++) {
+                assertEquals(rebuilt.getStopOnRoute(r, i), snapshot.getStopOnRoute(r, i));
+            }
+        }
+        for (int q = 0; q < 20; q++) {
+            LatLon pt = new LatLon(49.0 + random.nextDouble() * 0.4, -123.3 + random.nextDouble() * 0.6);
+            assertSame(rebuilt.findNearestTo(pt), snapshot.findNearestTo(pt));
+            assertEquals(new HashSet<>(rebuilt.findWithin(pt, 1000)), new HashSet<>(snapshot.findWithin(pt, 1000)));
+            LatLon southEast = new LatLon(pt.getLatitude() - 0.02, pt.getLongitude() + 0.03);
+            assertEquals(rebuilt.stopsInRectangle(pt, southEast), snapshot.stopsInRectangle(pt, southEast));
+        }
+    }
+}
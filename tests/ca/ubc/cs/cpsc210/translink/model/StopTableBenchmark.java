@@ -0,0 +1,91 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filling a table with the stops in res/raw/stops.json and looking stops up by number, in the StopTable that
+ * StopManager keeps and in the HashMap<Integer, Stop> it kept before.  Run with -prof gc to see the bytes
+ * allocated by each fill, which is the footprint of the table built, resizing included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopTableBenchmark {
+    private static final int LOOKUPS = 10000;
+
+    private Stop[] stops;
+    private int[] numbers;
+    private StopTable table;
+    private Map<Integer, Stop> map;
+
+    @Setup
+    public void loadStops() throws Exception {
+        TransitData.parseAll();
+        List<Stop> all = new ArrayList<>();
+        for (Stop stop : StopManager.getInstance()) {
+            all.add(stop);
+        }
+        stops = all.toArray(new Stop[all.size()]);
+        table = fillTable();
+        map = fillMap();
+        // mostly stops that exist, in random order, and some numbers with no stop
+        Random random = new Random(4);
+        numbers = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            numbers[i] = i % 10 == 0 ? 70000 + i : stops[random.nextInt(stops.length)].getNumber();
+        }
+    }
+
+    @Benchmark
+    public StopTable fillTable() {
+        StopTable filled = new StopTable();
+        for (Stop stop : stops) {
+            filled.putIfAbsent(stop);
+        }
+        return filled;
+    }
+
+    @Benchmark
+    public Map<Integer, Stop> fillMap() {
+        Map<Integer, Stop> filled = new HashMap<>();
+        for (Stop stop : stops) {
+            if (!filled.containsKey(stop.getNumber())) {
+                filled.put(stop.getNumber(), stop);
+            }
+        }
+        return filled;
+    }
+
+    @Benchmark
+    public int lookUpInTable() {
+        int found = 0;
+        for (int number : numbers) {
+            if (table.get(number) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int lookUpInMap() {
+        int found = 0;
+        for (int number : numbers) {
+            if (map.get(number) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
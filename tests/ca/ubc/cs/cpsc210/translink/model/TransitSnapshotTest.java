@@ -0,0 +1,115 @@
+package ca.ubc.cs.cpsc210.translink.model;
+
+import ca.ubc.cs.cpsc210.translink.util.CellId;
+import ca.ubc.cs.cpsc210.translink.util.Geometry;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the stops found in a rectangle by a snapshot against a scan over every stop, on random stops spread like
+ * those of a city and on stops near the north pole, and of the order of a snapshot's stops by cell id
+ */
+public class TransitSnapshotTest {
+    private static final int QUERIES = 5000;
+
+    @Test
+    public void testCityStops() {
+        Random random = new Random(22);
+        List<Stop> stops = randomStops(random, 3000, 49.0, -123.3, 0.4, 0.6);
+        TransitSnapshot snapshot = new TransitSnapshot(stops, Collections.<Route>emptyList(), 1);
+        for (int q = 0; q < QUERIES; q++) {
+            LatLon northWest = new LatLon(48.9 + random.nextDouble() * 0.6, -123.4 + random.nextDouble() * 0.8);
+            double size = q % 10 == 0 ? 0.5 : 0.05;
+            checkRectangle(snapshot, stops, northWest, random.nextDouble() * size, random.nextDouble() * size);
+        }
+    }
+
+    @Test
+    public void testPolarStops() {
+        Random random = new Random(23);
+        List<Stop> stops = randomStops(random, 1000, 80, -90, 9.99, 180);
+        TransitSnapshot snapshot = new TransitSnapshot(stops, Collections.<Route>emptyList(), 1);
+        for (int q = 0; q < QUERIES; q++) {
+            LatLon northWest = new LatLon(79.5 + random.nextDouble() * 10.49, -100 + random.nextDouble() * 190);
+            checkRectangle(snapshot, stops, northWest, random.nextDouble() * 2, random.nextDouble() * 20);
+        }
+    }
+
+    @Test
+    public void testEmptyAndInvertedRectangles() {
+        LatLon northWest = new LatLon(50, -124);
+        LatLon southEast = new LatLon(49, -123);
+        assertTrue(TransitSnapshot.EMPTY.stopsInRectangle(northWest, southEast).isEmpty());
+        List<Stop> stops = randomStops(new Random(24), 100, 49, -124, 1, 1);
+        TransitSnapshot snapshot = new TransitSnapshot(stops, Collections.<Route>emptyList(), 1);
+        assertEquals(stops.size(), snapshot.stopsInRectangle(northWest, southEast).size());
+        assertTrue(snapshot.stopsInRectangle(southEast, northWest).isEmpty());
+    }
+
+    @Test
+    public void testStopsOrderedByCell() {
+        Random random = new Random(25);
+        List<Stop> stops = randomStops(random, 2000, 49.0, -123.3, 0.4, 0.6);
+        TransitSnapshot snapshot = new TransitSnapshot(stops, Collections.<Route>emptyList(), 1);
+        assertEquals(stops.size(), snapshot.getNumStops());
+        for (int i = 0; i < snapshot.getNumStops(); i++) {
+            Stop stop = snapshot.getStopAt(i);
+            assertEquals(i, snapshot.getStopIndex(stop));
+            assertEquals(CellId.fromLatLon(stop.getLocn()), snapshot.getCellId(i));
+            if (i > 0) {
+                assertTrue(snapshot.getCellId(i - 1) <= snapshot.getCellId(i));
+            }
+        }
+        // the stops in a cell at any level are exactly those whose ids lie in the cell
+        for (int level : new int[] { 0, 8, 12, 16, 20, CellId.MAX_LEVEL }) {
+            for (int q = 0; q < 100; q++) {
+                long cell = CellId.parent(snapshot.getCellId(random.nextInt(stops.size())), level);
+                List<Stop> inCell = new ArrayList<>();
+                for (Stop stop : stops) {
+                    if (CellId.parent(CellId.fromLatLon(stop.getLocn()), level) == cell) {
+                        inCell.add(stop);
+                    }
+                }
+                List<Stop> found = snapshot.getStopsInCell(cell, level);
+                assertEquals(inCell.size(), found.size());
+                assertEquals(new HashSet<>(inCell), new HashSet<>(found));
+            }
+        }
+    }
+
+    /**
+     * Check the stops in the rectangle with the given north west corner and size against a scan over every stop
+     */
+    private static void checkRectangle(TransitSnapshot snapshot, List<Stop> stops, LatLon northWest, double height,
+                                       double width) {
+        LatLon southEast = new LatLon(northWest.getLatitude() - height, northWest.getLongitude() + width);
+        List<Stop> inside = new ArrayList<>();
+        for (Stop stop : stops) {
+            if (Geometry.rectangleContainsPoint(northWest, southEast, stop.getLocn())) {
+                inside.add(stop);
+            }
+        }
+        // the snapshot returns stops in index order, which need not be the order in which they were added
+        List<Stop> found = snapshot.stopsInRectangle(northWest, southEast);
+        assertEquals(inside.size(), found.size());
+        assertEquals(new HashSet<>(inside), new HashSet<>(found));
+    }
+
+    private static List<Stop> randomStops(Random random, int count, double south, double west, double height,
+                                          double width) {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            LatLon locn = new LatLon(south + random.nextDouble() * height, west + random.nextDouble() * width);
+            stops.add(new Stop(50000 + i, "Stop " + i, locn));
+        }
+        return stops;
+    }
+}
@@ -0,0 +1,80 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Setting the paths of all route patterns from res/raw/allroutemapstxt.txt: by scanning the bytes of the file,
+ * on one thread and on as many threads as there are processors, and as the parser did before, with a String for
+ * the file, a substring for each line, split on ';' and Double.parseDouble for each coordinate.  Run with -prof gc
+ * to compare the bytes each parse allocates; what the parallel parse allocates on its own threads is not counted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMapParserBenchmark {
+    private byte[] routeMaps;
+
+    @Setup
+    public void loadNetwork() throws Exception {
+        TransitData.parseAll();
+        routeMaps = TransitData.read(TransitData.ROUTE_MAPS);
+    }
+
+    @TearDown
+    public void restoreNetwork() throws Exception {
+        TransitData.parseAll();
+    }
+
+    @Benchmark
+    public void bytes() {
+        new RouteMapParser(null).parseRouteMaps(routeMaps);
+    }
+
+    @Benchmark
+    public void bytesInParallel() {
+        new RouteMapParser(null).parseRouteMapsInParallel(routeMaps, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public void strings() {
+        StopManager.getInstance().beginUpdate();
+        try {
+            String c = new String(routeMaps, Charset.forName("UTF-8"));
+            int posn = 0;
+            while (posn < c.length()) {
+                int endposn = c.indexOf('\n', posn);
+                if (endposn < 0) {
+                    endposn = c.length();
+                }
+                parseOnePattern(c.substring(posn, endposn));
+                posn = endposn + 1;
+            }
+        } finally {
+            StopManager.getInstance().endUpdate();
+        }
+    }
+
+    private static void parseOnePattern(String str) {
+        String[] parts = str.split(";");
+        int dashPoint = parts[0].indexOf("-", 1);
+        String routeNumber = parts[0].substring(1, dashPoint);
+        String patternName = parts[0].substring(dashPoint + 1);
+        List<LatLon> latLons = new ArrayList<>();
+        for (int i = 1; i < parts.length - 1; i = i + 2) {
+            latLons.add(new LatLon(Double.parseDouble(parts[i]), Double.parseDouble(parts[i + 1])));
+        }
+        RouteManager.getInstance().getRouteWithNumber(routeNumber).getPattern(patternName).setPath(latLons);
+    }
+}
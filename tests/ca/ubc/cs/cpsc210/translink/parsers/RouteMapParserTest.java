@@ -0,0 +1,105 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that parsing route maps in parallel gives exactly the network that parsing them sequentially does, however
+ * the data is split into chunks, including when the split points fall in the middle of lines
+ */
+public class RouteMapParserTest {
+    private static byte[] routeMaps;
+    private static List<String> sequential;
+
+    @BeforeClass
+    public static void parseSequentially() throws Exception {
+        routeMaps = TransitData.read(TransitData.ROUTE_MAPS);
+        TransitData.parseAll();
+        sequential = TransitData.describe();
+    }
+
+    @AfterClass
+    public static void restoreNetwork() throws Exception {
+        TransitData.parseAll();
+    }
+
+    @Test
+    public void testDefaultChunks() throws Exception {
+        assertEquals(sequential, parseInParallel(4, 4 * 4));
+    }
+
+    @Test
+    public void testOneChunk() throws Exception {
+        assertEquals(sequential, parseInParallel(2, 1));
+    }
+
+    @Test
+    public void testSmallChunks() throws Exception {
+        // chunks of about 100 bytes, far shorter than a line, so most lines hold several split points
+        assertEquals(sequential, parseInParallel(3, routeMaps.length / 100));
+    }
+
+    @Test
+    public void testChunkPerByte() throws Exception {
+        assertEquals(sequential, parseInParallel(2, routeMaps.length));
+    }
+
+    @Test
+    public void testMalformedLine() throws Exception {
+        byte[] data = ("N1-A;49.1;-123.1;49.2;-123.2\r\n"
+                + "\n"
+                + "N2-B;49.3;-123.3;\n"
+                + "N3-C;49.4;-123.x;49.5;-123.5\n"
+                + "N4-D;49.6;-123.6\n").getBytes(Charset.forName("US-ASCII"));
+        List<String> expected = parseWithFailure(data, 0, 0);
+        for (int chunks = 1; chunks <= data.length; chunks++) {
+            assertEquals("in " + chunks + " chunks", expected, parseWithFailure(data, 2, chunks));
+        }
+    }
+
+    /**
+     * Parse the stops, routes and route maps into empty managers, parsing the route maps on the given number of
+     * threads in the given number of chunks, and describe the network parsed
+     */
+    private static List<String> parseInParallel(int threads, int chunks) throws Exception {
+        StopManager.getInstance().beginReload();
+        try {
+            TransitData.parseStopsAndRoutes();
+            new RouteMapParser(null).parseRouteMapsInParallel(routeMaps, threads, chunks);
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        return TransitData.describe();
+    }
+
+    /**
+     * Parse data, which must have a malformed coordinate, into empty managers, sequentially if threads is 0 and
+     * otherwise in parallel, and describe the patterns stored before the parse failed
+     */
+    private static List<String> parseWithFailure(byte[] data, int threads, int chunks) {
+        StopManager.getInstance().beginReload();
+        try {
+            if (threads == 0) {
+                new RouteMapParser(null).parseRouteMaps(data);
+            } else {
+                new RouteMapParser(null).parseRouteMapsInParallel(data, threads, chunks);
+            }
+            fail("malformed coordinate not reported");
+        } catch (NumberFormatException e) {
+            // expected
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        assertEquals(2, RouteManager.getInstance().getNumRoutes());
+        return TransitData.describe();
+    }
+}
@@ -0,0 +1,102 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a transit snapshot loads to exactly the network parsed from the original files, and that a corrupt
+ * snapshot changes nothing
+ */
+public class SnapshotLoaderTest {
+    private static File snapshotFile;
+    private static List<String> parsed;
+
+    @BeforeClass
+    public static void compileSnapshot() throws Exception {
+        snapshotFile = File.createTempFile("transit", ".bin");
+        SnapshotCompiler.compile(TransitData.RAW, snapshotFile);
+        TransitData.parseAll();
+        parsed = TransitData.describe();
+    }
+
+    @AfterClass
+    public static void deleteSnapshot() {
+        snapshotFile.delete();
+    }
+
+    @Test
+    public void testLoadGivesParsedNetwork() throws IOException {
+        StopManager.getInstance().beginReload();
+        StopManager.getInstance().endReload();
+        assertEquals(0, StopManager.getInstance().getNumStops());
+
+        SnapshotLoader.load(snapshotFile);
+        assertEquals(parsed, TransitData.describe());
+    }
+
+    @Test
+    public void testLoadReplacesNetwork() throws Exception {
+        TransitData.parseAll();
+        SnapshotLoader.load(snapshotFile);
+        assertEquals(parsed, TransitData.describe());
+    }
+
+    @Test
+    public void testCompileIsRepeatable() throws Exception {
+        File again = File.createTempFile("transit", ".bin");
+        try {
+            SnapshotCompiler.compile(TransitData.RAW, again);
+            assertArrayEquals(Files.readAllBytes(snapshotFile.toPath()), Files.readAllBytes(again.toPath()));
+        } finally {
+            again.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptSnapshotChangesNothing() throws Exception {
+        byte[] data = Files.readAllBytes(snapshotFile.toPath());
+        StopManager.getInstance().beginReload();
+        StopManager.getInstance().endReload();
+
+        // a stop of the last route out of range, found only after all the other tables have been read
+        byte[] corrupt = data.clone();
+        ByteBuffer header = ByteBuffer.wrap(corrupt);
+        int numStops = header.getInt(5 * 4);
+        int numPathInts = header.getInt(9 * 4);
+        int routeStopsEnd = corrupt.length - 4 * numPathInts;
+        ByteBuffer.wrap(corrupt).putInt(routeStopsEnd - 4, numStops);
+        assertLoadFails(corrupt);
+
+        // a string count far larger than the file
+        corrupt = data.clone();
+        ByteBuffer.wrap(corrupt).putInt(3 * 4, Integer.MAX_VALUE - 1);
+        assertLoadFails(corrupt);
+
+        // truncated
+        assertLoadFails(Arrays.copyOf(data, data.length / 2));
+    }
+
+    private static void assertLoadFails(byte[] data) {
+        try {
+            SnapshotLoader.load(ByteBuffer.wrap(data));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        assertEquals(0, StopManager.getInstance().getNumStops());
+        assertFalse(RouteManager.getInstance().iterator().hasNext());
+    }
+}
@@ -0,0 +1,77 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing res/raw/stops.json into empty managers with the streaming StopParser, and with the org.json DOM the
+ * parser used before: the whole file read into a String, then into a JSONArray, then stored stop by stop.  Run
+ * with -prof gc to compare the bytes each parse allocates; the DOM holds all of them at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StopParserBenchmark {
+    private byte[] stopsJson;
+
+    @Setup
+    public void loadFile() throws Exception {
+        stopsJson = TransitData.read(TransitData.STOPS);
+    }
+
+    @TearDown
+    public void restoreNetwork() throws Exception {
+        TransitData.parseAll();
+    }
+
+    @Benchmark
+    public int streaming() throws Exception {
+        StopManager.getInstance().beginReload();
+        try {
+            new StopParser(null).parseStops(new InputStreamReader(new ByteArrayInputStream(stopsJson), "UTF-8"));
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        return StopManager.getInstance().getNumStops();
+    }
+
+    @Benchmark
+    public int dom() throws Exception {
+        StopManager.getInstance().beginReload();
+        try {
+            JSONArray jsonArray = new JSONArray(new String(stopsJson, Charset.forName("UTF-8")));
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject jsonObject = jsonArray.getJSONObject(i);
+                if (!(jsonObject.has("Name") && jsonObject.has("StopNo") && jsonObject.has("Routes")
+                        && jsonObject.has("Latitude") && jsonObject.has("Longitude"))) {
+                    throw new StopDataMissingException("Stop is missing some elements.");
+                }
+                LatLon locn = new LatLon(jsonObject.getDouble("Latitude"), jsonObject.getDouble("Longitude"));
+                Stop stop = StopManager.getInstance().getStopWithId(jsonObject.getInt("StopNo"),
+                        jsonObject.getString("Name"), locn);
+                for (String number : jsonObject.getString("Routes").split(",")) {
+                    // links the stop back to the route too
+                    RouteManager.getInstance().getRouteWithNumber(number.trim()).addStop(stop);
+                }
+            }
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        return StopManager.getInstance().getNumStops();
+    }
+}
@@ -0,0 +1,217 @@
+package ca.ubc.cs.cpsc210.translink.parsers;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.model.RouteManager;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import ca.ubc.cs.cpsc210.translink.parsers.exception.StopDataMissingException;
+import ca.ubc.cs.cpsc210.translink.util.LatLon;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the streaming stop parser against the org.json DOM parser it replaced, which read the whole document
+ * into a JSONArray and then stored it stop by stop.  Both must store the same stops and routes and throw the same
+ * kind of exception, except that on a syntax error the streaming parser has already stored the stops before it.
+ */
+public class StopParserTest {
+    private static final String STOP_1 = "{\"StopNo\":50001,\"Name\":\"WB W 41 AVE FS EAST BLVD\","
+            + "\"Latitude\":49.234,\"Longitude\":-123.155,\"Routes\":\"041, 043\",\"AtStreet\":\"EAST BLVD\"}";
+    private static final String STOP_2 = "{\"Name\":\"CAF\\u00c9 \\\"CENTRAL\\\" \\\\ \\/ STN\\n\\t\\u20ac\","
+            + "\"StopNo\":50002,\"Routes\":\"099\",\"Latitude\":49.262,\"Longitude\":-123.069,"
+            + "\"Extra\":{\"a\":[1,2,{\"b\":\"]}\"}],\"c\":null},\"Wheelchair\":true}";
+    private static final String STOP_3 = "{\"Name\":\"Caf\u00e9 \u00fcber \u6771 \ud83d\ude8c\",\"StopNo\":50003,"
+            + "\"Routes\":\"041\",\"Latitude\":4.9262E1,\"Longitude\":-1.23069e2}";
+    private static final String[] FIELDS = { "Name", "StopNo", "Routes", "Latitude", "Longitude" };
+
+    @AfterClass
+    public static void clearNetwork() {
+        StopManager.getInstance().clearStops();
+        RouteManager.getInstance().clearRoutes();
+    }
+
+    @Test
+    public void testValidDocuments() {
+        checkSameAsDom("[]");
+        checkSameAsDom(" [ " + STOP_1 + " , " + STOP_2 + " ,\n" + STOP_3 + " ] ");
+        checkSameAsDom("[" + STOP_3 + "," + STOP_3 + "]");
+        assertEquals("ok", parse("[" + STOP_2 + "," + STOP_3 + "]").get(0));
+        assertEquals("CAF\u00c9 \"CENTRAL\" \\ / STN\n\t\u20ac",
+                StopManager.getInstance().getStopWithId(50002).getName());
+        assertEquals("Caf\u00e9 \u00fcber \u6771 \ud83d\ude8c",
+                StopManager.getInstance().getStopWithId(50003).getName());
+    }
+
+    @Test
+    public void testMissingFields() {
+        for (String field : FIELDS) {
+            String stop = STOP_1.replace("\"" + field + "\"", "\"Other\"").replace("50001", "50009");
+            checkSameAsDom("[" + STOP_2 + "," + stop + "," + STOP_3 + "]");
+        }
+        checkSameAsDom("[" + STOP_2 + ",{}]");
+    }
+
+    @Test
+    public void testWrongTypes() {
+        String[][] replacements = {
+                { "\"StopNo\":50001", "\"StopNo\":\"50001\"" },
+                { "\"StopNo\":50001", "\"StopNo\":\"5000x\"" },
+                { "\"StopNo\":50001", "\"StopNo\":50001.7" },
+                { "\"StopNo\":50001", "\"StopNo\":5.0001e4" },
+                { "\"StopNo\":50001", "\"StopNo\":true" },
+                { "\"StopNo\":50001", "\"StopNo\":null" },
+                { "\"StopNo\":50001", "\"StopNo\":[50001]" },
+                { "\"Name\":\"WB W 41 AVE FS EAST BLVD\"", "\"Name\":41" },
+                { "\"Name\":\"WB W 41 AVE FS EAST BLVD\"", "\"Name\":null" },
+                { "\"Name\":\"WB W 41 AVE FS EAST BLVD\"", "\"Name\":false" },
+                { "\"Name\":\"WB W 41 AVE FS EAST BLVD\"", "\"Name\":{\"en\":\"x\"}" },
+                { "\"Latitude\":49.234", "\"Latitude\":\"49.234\"" },
+                { "\"Latitude\":49.234", "\"Latitude\":\"north\"" },
+                { "\"Latitude\":49.234", "\"Latitude\":true" },
+                { "\"Latitude\":49.234", "\"Latitude\":[49.234]" },
+                { "\"Routes\":\"041, 043\"", "\"Routes\":41" },
+                { "\"Routes\":\"041, 043\"", "\"Routes\":[\"041\",\"043\"]" },
+        };
+        for (String[] replacement : replacements) {
+            checkSameAsDom("[" + STOP_2 + "," + STOP_1.replace(replacement[0], replacement[1]) + "," + STOP_3 + "]");
+        }
+        checkSameAsDom("[" + STOP_2 + ",\"stop\"," + STOP_3 + "]");
+        checkSameAsDom("[" + STOP_2 + ",[]," + STOP_3 + "]");
+        checkSameAsDom("{\"Stops\":[" + STOP_1 + "]}");
+        checkSameAsDom("\"stops\"");
+    }
+
+    @Test
+    public void testTruncatedDocuments() {
+        String[] stops = { STOP_1, STOP_2, STOP_3 };
+        String document = "[" + STOP_1 + "," + STOP_2 + "," + STOP_3 + "]";
+        for (int length = 0; length < document.length(); length++) {
+            // the stops whose closing brace is within the text read have been stored
+            int complete = 0;
+            int end = 1;
+            for (String stop : stops) {
+                end += stop.length();
+                if (end <= length) {
+                    complete++;
+                }
+                end++;
+            }
+            checkPartialStore(document.substring(0, length), stops, complete);
+        }
+    }
+
+    @Test
+    public void testSyntaxErrors() {
+        String[] stops = { STOP_1, STOP_2, STOP_3 };
+        checkPartialStore("[" + STOP_1 + " " + STOP_2 + "]", stops, 1);
+        checkPartialStore("[" + STOP_1 + ",," + STOP_2 + "]", stops, 1);
+        checkPartialStore("[" + STOP_1 + "," + STOP_2.replace("\"StopNo\":", "\"StopNo\"") + "]", stops, 1);
+        checkPartialStore("[" + STOP_1 + "," + STOP_2 + "," + STOP_3 + "}", stops, 3);
+        checkPartialStore("[" + STOP_1 + "," + STOP_2.replace("}", "]") + "]", stops, 1);
+        // org.json let the NumberFormatException from a malformed unicode escape out; it is a syntax error here
+        String badEscape = "[" + STOP_1 + "," + STOP_2.replace("\\u00c9", "\\u00g9") + "]";
+        try {
+            parseWithDom(badEscape);
+            fail("malformed escape not reported by org.json");
+        } catch (NumberFormatException e) {
+            // expected
+        }
+        assertEquals(storedBefore(stops, 1), parse(badEscape));
+    }
+
+    /**
+     * Check that the streaming parser, given a document with a syntax error after the given number of stops, throws
+     * a JSONException, as the DOM parser does, and stores just those stops, as the DOM parser would have if the
+     * document had ended before the error
+     */
+    private static void checkPartialStore(String document, String[] stops, int complete) {
+        assertEquals("JSONException", parseWithDom(document).get(0));
+        assertEquals(document, storedBefore(stops, complete), parse(document));
+    }
+
+    /**
+     * Return the outcome and description of a parse that throws a JSONException after storing the given number of
+     * stops, as given by the DOM parser for a document of just those stops
+     */
+    private static List<String> storedBefore(String[] stops, int complete) {
+        StringBuilder before = new StringBuilder("[");
+        for (int i = 0; i < complete; i++) {
+            before.append(i > 0 ? "," : "").append(stops[i]);
+        }
+        List<String> stored = parseWithDom(before.append("]").toString());
+        stored.set(0, "JSONException");
+        return stored;
+    }
+
+    /**
+     * Check that the streaming parser stores the same stops and routes and throws the same kind of exception as the
+     * DOM parser
+     */
+    private static void checkSameAsDom(String document) {
+        assertEquals(document, parseWithDom(document), parse(document));
+    }
+
+    /**
+     * Parse document with the streaming parser into empty managers, and return the simple name of the exception
+     * thrown, or "ok", followed by the description of the network stored
+     */
+    private static List<String> parse(String document) {
+        String outcome = "ok";
+        StopManager.getInstance().beginReload();
+        try {
+            new StopParser(null).parseStops(document);
+        } catch (JSONException | StopDataMissingException e) {
+            outcome = e.getClass().getSimpleName();
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        return describe(outcome);
+    }
+
+    /**
+     * Parse document as the stop parser did with the org.json DOM, into empty managers, and return the outcome
+     * and the description of the network stored as parse does
+     */
+    private static List<String> parseWithDom(String document) {
+        String outcome = "ok";
+        StopManager.getInstance().beginReload();
+        try {
+            JSONArray jsonArray = new JSONArray(document);
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject jsonObject = jsonArray.getJSONObject(i);
+                if (!(jsonObject.has("Name") && jsonObject.has("StopNo") && jsonObject.has("Routes")
+                        && jsonObject.has("Latitude") && jsonObject.has("Longitude"))) {
+                    throw new StopDataMissingException("Stop is missing some elements.");
+                }
+                String stopName = jsonObject.getString("Name");
+                int stopNumber = jsonObject.getInt("StopNo");
+                double lat = jsonObject.getDouble("Latitude");
+                double lon = jsonObject.getDouble("Longitude");
+                Stop stop = StopManager.getInstance().getStopWithId(stopNumber, stopName, new LatLon(lat, lon));
+                for (String number : jsonObject.getString("Routes").split(",")) {
+                    RouteManager.getInstance().getRouteWithNumber(number.trim()).addStop(stop);
+                }
+            }
+        } catch (JSONException | StopDataMissingException e) {
+            outcome = e.getClass().getSimpleName();
+        } finally {
+            StopManager.getInstance().endReload();
+        }
+        return describe(outcome);
+    }
+
+    private static List<String> describe(String outcome) {
+        List<String> lines = new ArrayList<>(Arrays.asList(outcome));
+        lines.addAll(TransitData.describe());
+        return lines;
+    }
+}
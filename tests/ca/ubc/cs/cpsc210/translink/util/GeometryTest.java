@@ -0,0 +1,199 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of line and path clipping against random rectangles and lines, checking each clipped line against points
+ * sampled along the whole line
+ */
+public class GeometryTest {
+    private static final int TRIALS = 20000;
+    private static final int SAMPLES = 200;
+    private static final double EPSILON = 1e-9;
+    private static final LatLon NW = new LatLon(49.3, -123.2);
+    private static final LatLon SE = new LatLon(49.2, -123.0);
+
+    @Test
+    public void testLinesInsideAndOutside() {
+        LatLon inside1 = new LatLon(49.25, -123.15);
+        LatLon inside2 = new LatLon(49.28, -123.05);
+        LatLon[] clipped = Geometry.clipLine(NW, SE, inside1, inside2);
+        // ends inside the rectangle are returned as they are
+        assertSame(inside1, clipped[0]);
+        assertSame(inside2, clipped[1]);
+        assertNull(Geometry.clipLine(NW, SE, new LatLon(49.4, -123.3), new LatLon(49.4, -122.9)));
+        assertFalse(Geometry.rectangleIntersectsLine(NW, SE, new LatLon(49.4, -123.3), new LatLon(49.4, -122.9)));
+    }
+
+    @Test
+    public void testVerticalHorizontalAndPointLines() {
+        // a vertical line across the rectangle is cut at its north and south sides
+        LatLon[] clipped = Geometry.clipLine(NW, SE, new LatLon(49.1, -123.1), new LatLon(49.4, -123.1));
+        assertEquals(new LatLon(49.2, -123.1).getLatitude(), clipped[0].getLatitude(), EPSILON);
+        assertEquals(49.3, clipped[1].getLatitude(), EPSILON);
+        assertEquals(-123.1, clipped[0].getLongitude(), 0);
+        // a horizontal line across the rectangle is cut at its west and east sides
+        clipped = Geometry.clipLine(NW, SE, new LatLon(49.25, -123.5), new LatLon(49.25, -122.5));
+        assertEquals(-123.2, clipped[0].getLongitude(), EPSILON);
+        assertEquals(-123.0, clipped[1].getLongitude(), EPSILON);
+        // lines lying along a side are on the boundary, and so inside
+        assertNotNull(Geometry.clipLine(NW, SE, new LatLon(49.3, -123.5), new LatLon(49.3, -122.5)));
+        assertNotNull(Geometry.clipLine(NW, SE, new LatLon(49.0, -123.0), new LatLon(49.5, -123.0)));
+        assertNull(Geometry.clipLine(NW, SE, new LatLon(49.0, -122.99), new LatLon(49.5, -122.99)));
+        // a line that is a single point is inside exactly when the point is
+        LatLon point = new LatLon(49.25, -123.1);
+        clipped = Geometry.clipLine(NW, SE, point, point);
+        assertSame(point, clipped[0]);
+        assertSame(point, clipped[1]);
+        assertNotNull(Geometry.clipLine(NW, SE, NW, NW));
+        assertNull(Geometry.clipLine(NW, SE, new LatLon(49.31, -123.1), new LatLon(49.31, -123.1)));
+    }
+
+    @Test
+    public void testClipLineAgreesWithSampledPoints() {
+        Random random = new Random(18);
+        for (int i = 0; i < TRIALS; i++) {
+            LatLon[] corners = randomRectangle(random);
+            // coordinates on a coarse grid, so that many lines are vertical, horizontal, points or along a side
+            LatLon src = randomPoint(random, i % 2 == 0);
+            LatLon dst = randomPoint(random, i % 2 == 0);
+            checkClipLine(corners[0], corners[1], src, dst);
+        }
+    }
+
+    @Test
+    public void testClipPathJoinsClippedLines() {
+        Random random = new Random(19);
+        for (int i = 0; i < TRIALS / 10; i++) {
+            LatLon[] corners = randomRectangle(random);
+            int count = random.nextInt(30);
+            double[] lats = new double[count];
+            double[] lons = new double[count];
+            for (int j = 0; j < count; j++) {
+                LatLon point = randomPoint(random, j % 3 == 0);
+                lats[j] = point.getLatitude();
+                lons[j] = point.getLongitude();
+            }
+            checkClipPath(corners[0], corners[1], lats, lons, count);
+        }
+    }
+
+    /**
+     * Check that the clipped line lies inside the rectangle and on the line, and that a point sampled along the line
+     * is inside the rectangle exactly when it is on the clipped line
+     */
+    private static void checkClipLine(LatLon nw, LatLon se, LatLon src, LatLon dst) {
+        LatLon[] clipped = Geometry.clipLine(nw, se, src, dst);
+        assertEquals(clipped != null, Geometry.rectangleIntersectsLine(nw, se, src, dst));
+        double t0 = 2;
+        double t1 = -1;
+        if (clipped != null) {
+            assertTrue(containsNearly(nw, se, clipped[0]));
+            assertTrue(containsNearly(nw, se, clipped[1]));
+            t0 = parameterOf(src, dst, clipped[0]);
+            t1 = parameterOf(src, dst, clipped[1]);
+            assertTrue(t0 <= t1 + EPSILON);
+            if (Geometry.rectangleContainsPoint(nw, se, src)) {
+                assertSame(src, clipped[0]);
+            }
+            if (Geometry.rectangleContainsPoint(nw, se, dst)) {
+                assertSame(dst, clipped[1]);
+            }
+        }
+        for (int k = 0; k <= SAMPLES; k++) {
+            double t = (double) k / SAMPLES;
+            LatLon sample = new LatLon(src.getLatitude() + t * (dst.getLatitude() - src.getLatitude()),
+                    src.getLongitude() + t * (dst.getLongitude() - src.getLongitude()));
+            // every point of a line that is a single point is at t = 0
+            boolean onClipped = src.equals(dst) ? clipped != null : t >= t0 - EPSILON && t <= t1 + EPSILON;
+            // a line that just touches a corner may be missed by rounding, so only points clearly inside must be kept
+            if (containsNearly(nw, se, sample, -EPSILON)) {
+                assertTrue("sample " + sample + " of " + src + " " + dst + " missed", onClipped);
+            } else if (onClipped) {
+                assertTrue("sample " + sample + " of " + src + " " + dst + " outside", containsNearly(nw, se, sample));
+            }
+        }
+    }
+
+    /**
+     * Check that the parts of the clipped path are made of exactly the clipped lines of the path, joined where one
+     * ends inside the rectangle and the next starts there
+     */
+    private static void checkClipPath(LatLon nw, LatLon se, double[] lats, double[] lons, int count) {
+        List<List<LatLon>> parts = Geometry.clipPath(nw, se, lats, lons, count);
+        List<LatLon> expected = new ArrayList<>();
+        int expectedParts = 0;
+        boolean continuing = false;
+        for (int i = 0; i + 1 < count; i++) {
+            LatLon src = new LatLon(lats[i], lons[i]);
+            LatLon[] clipped = Geometry.clipLine(nw, se, src, new LatLon(lats[i + 1], lons[i + 1]));
+            if (clipped == null) {
+                continuing = false;
+                continue;
+            }
+            if (!(continuing && clipped[0].equals(src))) {
+                expectedParts++;
+                expected.add(null);
+                expected.add(clipped[0]);
+                expected.add(clipped[1]);
+            } else if (!clipped[1].equals(src)) {
+                expected.add(clipped[1]);
+            }
+            continuing = clipped[1].getLatitude() == lats[i + 1] && clipped[1].getLongitude() == lons[i + 1];
+        }
+        List<LatLon> actual = new ArrayList<>();
+        for (List<LatLon> part : parts) {
+            assertTrue(part.size() >= 2);
+            actual.add(null);
+            actual.addAll(part);
+        }
+        assertEquals(expectedParts, parts.size());
+        assertEquals(expected, actual);
+    }
+
+    private static LatLon[] randomRectangle(Random random) {
+        double south = 49 + random.nextInt(10) / 10.0;
+        double west = -123.5 + random.nextInt(10) / 10.0;
+        double north = south + random.nextInt(5) / 10.0;
+        double east = west + random.nextInt(5) / 10.0;
+        return new LatLon[] { new LatLon(north, west), new LatLon(south, east) };
+    }
+
+    private static LatLon randomPoint(Random random, boolean onGrid) {
+        if (onGrid) {
+            return new LatLon(48.9 + random.nextInt(16) / 10.0, -123.6 + random.nextInt(16) / 10.0);
+        }
+        return new LatLon(48.9 + random.nextDouble() * 1.5, -123.6 + random.nextDouble() * 1.5);
+    }
+
+    private static boolean containsNearly(LatLon nw, LatLon se, LatLon point) {
+        return containsNearly(nw, se, point, EPSILON);
+    }
+
+    /**
+     * Return true if the point is in the rectangle grown by margin on every side, or shrunk if margin is negative
+     */
+    private static boolean containsNearly(LatLon nw, LatLon se, LatLon point, double margin) {
+        return Geometry.rectangleContainsPoint(new LatLon(nw.getLatitude() + margin, nw.getLongitude() - margin),
+                new LatLon(se.getLatitude() - margin, se.getLongitude() + margin), point);
+    }
+
+    /**
+     * Return t such that point is src + t * (dst - src), checking that point is on the line
+     */
+    private static double parameterOf(LatLon src, LatLon dst, LatLon point) {
+        double dLat = dst.getLatitude() - src.getLatitude();
+        double dLon = dst.getLongitude() - src.getLongitude();
+        double pLat = point.getLatitude() - src.getLatitude();
+        double pLon = point.getLongitude() - src.getLongitude();
+        assertEquals("point " + point + " off " + src + " " + dst, 0, dLon * pLat - dLat * pLon, EPSILON);
+        double squared = dLat * dLat + dLon * dLon;
+        return squared == 0 ? 0 : (pLat * dLat + pLon * dLon) / squared;
+    }
+}
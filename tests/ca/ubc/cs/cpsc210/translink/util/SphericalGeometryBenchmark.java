@@ -0,0 +1,103 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import ca.ubc.cs.cpsc210.translink.TransitData;
+import ca.ubc.cs.cpsc210.translink.model.Stop;
+import ca.ubc.cs.cpsc210.translink.model.StopManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distances from one point to every stop in res/raw/stops.json: haversine one stop at a time, with the cosines of
+ * the stop latitudes kept, and in a batch, against the equirectangular approximation, and counting the stops within
+ * a radius with and without the approximation as a prefilter
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SphericalGeometryBenchmark {
+    private static final double LAT = 49.2606;
+    private static final double LON = -123.2460;
+    private static final double RADIUS = 2000;
+
+    private double[] lats;
+    private double[] lons;
+    private double[] cosLats;
+    private double[] distances;
+    private int count;
+
+    @Setup
+    public void loadStops() throws Exception {
+        TransitData.parseAll();
+        count = StopManager.getInstance().getNumStops();
+        lats = new double[count];
+        lons = new double[count];
+        cosLats = new double[count];
+        distances = new double[count];
+        int i = 0;
+        for (Stop stop : StopManager.getInstance()) {
+            lats[i] = stop.getLocn().getLatitude();
+            lons[i] = stop.getLocn().getLongitude();
+            cosLats[i] = SphericalGeometry.cosLatitude(lats[i]);
+            i++;
+        }
+    }
+
+    @Benchmark
+    public double[] haversine() {
+        for (int i = 0; i < count; i++) {
+            distances[i] = SphericalGeometry.distanceBetween(LAT, LON, lats[i], lons[i]);
+        }
+        return distances;
+    }
+
+    @Benchmark
+    public double[] haversineWithCosines() {
+        double cosLat = SphericalGeometry.cosLatitude(LAT);
+        for (int i = 0; i < count; i++) {
+            distances[i] = SphericalGeometry.distanceBetween(LAT, LON, cosLat, lats[i], lons[i], cosLats[i]);
+        }
+        return distances;
+    }
+
+    @Benchmark
+    public double[] haversineBatch() {
+        SphericalGeometry.distancesBetween(LAT, LON, lats, lons, count, distances);
+        return distances;
+    }
+
+    @Benchmark
+    public double[] equirectangularBatch() {
+        SphericalGeometry.equirectangularDistances(LAT, LON, lats, lons, count, distances);
+        return distances;
+    }
+
+    @Benchmark
+    public int withinByHaversine() {
+        int within = 0;
+        for (int i = 0; i < count; i++) {
+            if (SphericalGeometry.distanceBetween(LAT, LON, lats[i], lons[i]) <= RADIUS) {
+                within++;
+            }
+        }
+        return within;
+    }
+
+    @Benchmark
+    public int withinByPrefilter() {
+        double cosLat = SphericalGeometry.cosLatitude(LAT);
+        // beyond this approximate distance a stop cannot be within the radius
+        double bound = RADIUS * (1 + SphericalGeometry.EQUIRECTANGULAR_ERROR);
+        int within = 0;
+        for (int i = 0; i < count; i++) {
+            if (SphericalGeometry.equirectangularDistance(LAT, LON, lats[i], lons[i], cosLat) <= bound
+                    && SphericalGeometry.distanceBetween(LAT, LON, cosLat, lats[i], lons[i], cosLats[i]) <= RADIUS) {
+                within++;
+            }
+        }
+        return within;
+    }
+}
@@ -0,0 +1,136 @@
+package ca.ubc.cs.cpsc210.translink.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the exact haversine distance and the equirectangular approximation used to rule out far points
+ */
+public class SphericalGeometryTest {
+    private static final int TRIALS = 200000;
+    private static final double METRES_PER_DEGREE_LAT = 111195;
+
+    @Test
+    public void testKnownDistances() {
+        assertEquals(0, SphericalGeometry.distanceBetween(49.26, -123.25, 49.26, -123.25), 0);
+        // one degree of latitude, and half way round the earth
+        assertEquals(METRES_PER_DEGREE_LAT, SphericalGeometry.distanceBetween(49, -123, 50, -123), 1);
+        assertEquals(Math.PI * 6371000, SphericalGeometry.distanceBetween(0, 0, 0, 180), 1e-6);
+        // the short way across the antimeridian
+        assertEquals(2 * METRES_PER_DEGREE_LAT, SphericalGeometry.distanceBetween(0, 179, 0, -179), 1);
+    }
+
+    @Test
+    public void testEquirectangularAcrossAntimeridian() {
+        // the same distances as with the points moved well away from longitude 180
+        assertEquals(SphericalGeometry.equirectangularDistance(-17, 0.5, -17.1, -0.5),
+                SphericalGeometry.equirectangularDistance(-17, 179.5, -17.1, -179.5), 1e-6);
+        assertEquals(SphericalGeometry.equirectangularDistance(-17, -0.2, -16.9, 0.3),
+                SphericalGeometry.equirectangularDistance(-17, -179.8, -16.9, 179.7), 1e-6);
+        double[] lats = { 65.9, 66.1, 66 };
+        double[] lons = { -179.99, 179.99, 180 };
+        double[] distances = new double[lats.length];
+        SphericalGeometry.equirectangularDistances(66, -180, lats, lons, lats.length, distances);
+        for (int i = 0; i < lats.length; i++) {
+            assertEquals(SphericalGeometry.equirectangularDistance(66, -180, lats[i], lons[i]), distances[i], 0);
+            assertEquals(SphericalGeometry.distanceBetween(66, -180, lats[i], lons[i]), distances[i],
+                    1e-6 + distances[i] * SphericalGeometry.EQUIRECTANGULAR_ERROR);
+        }
+    }
+
+    @Test
+    public void testCosineFormMatchesHaversineExactly() {
+        Random random = new Random(16);
+        for (int i = 0; i < TRIALS; i++) {
+            double lat1 = random.nextDouble() * 180 - 90;
+            double lon1 = random.nextDouble() * 360 - 180;
+            double lat2 = random.nextDouble() * 180 - 90;
+            double lon2 = random.nextDouble() * 360 - 180;
+            double expected = SphericalGeometry.distanceBetween(lat1, lon1, lat2, lon2);
+            double actual = SphericalGeometry.distanceBetween(lat1, lon1, SphericalGeometry.cosLatitude(lat1),
+                    lat2, lon2, SphericalGeometry.cosLatitude(lat2));
+            assertEquals(expected, actual, 0);
+        }
+    }
+
+    @Test
+    public void testBatchDistancesMatchScalar() {
+        Random random = new Random(17);
+        int count = 1000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        for (int i = 0; i < count; i++) {
+            lats[i] = 49 + random.nextDouble();
+            lons[i] = -123.5 + random.nextDouble();
+        }
+        double[] exact = new double[count];
+        double[] approximate = new double[count];
+        SphericalGeometry.distancesBetween(49.25, -123.1, lats, lons, count, exact);
+        SphericalGeometry.equirectangularDistances(49.25, -123.1, lats, lons, count, approximate);
+        for (int i = 0; i < count; i++) {
+            assertEquals(SphericalGeometry.distanceBetween(49.25, -123.1, lats[i], lons[i]), exact[i], 0);
+            assertEquals(SphericalGeometry.equirectangularDistance(49.25, -123.1, lats[i], lons[i]),
+                    approximate[i], 0);
+        }
+    }
+
+    @Test
+    public void testEquirectangularErrorBound() {
+        assertWorstError(-SphericalGeometry.EQUIRECTANGULAR_MAX_LATITUDE, SphericalGeometry.EQUIRECTANGULAR_MAX_LATITUDE,
+                SphericalGeometry.EQUIRECTANGULAR_ERROR);
+    }
+
+    @Test
+    public void testEquirectangularErrorAroundVancouver() {
+        // the documented worst case between latitudes 45 and 55
+        assertWorstError(45, 55, 0.0009);
+    }
+
+    /**
+     * Check the relative error of equirectangularDistance against distanceBetween for random pairs of points less
+     * than EQUIRECTANGULAR_MAX_DISTANCE apart, the first between the given latitudes
+     */
+    private static void assertWorstError(double minLat, double maxLat, double bound) {
+        Random random = new Random(18);
+        double worst = 0;
+        for (int i = 0; i < TRIALS; i++) {
+            double lat1 = minLat + random.nextDouble() * (maxLat - minLat);
+            double lon1 = random.nextDouble() * 360 - 180;
+            // a point up to the greatest distance away in any direction
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double metres = random.nextDouble() * SphericalGeometry.EQUIRECTANGULAR_MAX_DISTANCE;
+            double lat2 = lat1 + Math.cos(bearing) * metres / METRES_PER_DEGREE_LAT;
+            double lon2 = lon1 + Math.sin(bearing) * metres / METRES_PER_DEGREE_LAT
+                    / SphericalGeometry.cosLatitude(lat1);
+            double exact = SphericalGeometry.distanceBetween(lat1, lon1, lat2, lon2);
+            if (exact == 0 || exact >= SphericalGeometry.EQUIRECTANGULAR_MAX_DISTANCE
+                    || lon2 < -180 || lon2 > 180) {
+                continue;
+            }
+            double error = Math.abs(SphericalGeometry.equirectangularDistance(lat1, lon1, lat2, lon2) - exact) / exact;
+            worst = Math.max(worst, error);
+        }
+        assertTrue("worst relative error " + worst, worst < bound);
+    }
+
+    @Test
+    public void testEquirectangularRanksLikeHaversine() {
+        // the prefilter is only sound if a point ruled out by the approximate distance is also out by the exact one
+        Random random = new Random(19);
+        double radius = 10000;
+        double margin = radius * SphericalGeometry.EQUIRECTANGULAR_ERROR;
+        for (int i = 0; i < TRIALS; i++) {
+            double lat1 = 49 + random.nextDouble() * 0.5;
+            double lon1 = -123.4 + random.nextDouble() * 0.6;
+            double lat2 = lat1 + (random.nextDouble() - 0.5) * 0.25;
+            double lon2 = lon1 + (random.nextDouble() - 0.5) * 0.4;
+            double approximate = SphericalGeometry.equirectangularDistance(lat1, lon1, lat2, lon2);
+            if (approximate > radius + margin) {
+                assertTrue(SphericalGeometry.distanceBetween(lat1, lon1, lat2, lon2) > radius);
+            }
+        }
+    }
+}